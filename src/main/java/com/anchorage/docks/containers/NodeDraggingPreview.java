@@ -20,14 +20,16 @@ package com.anchorage.docks.containers;
 
 import static com.anchorage.docks.containers.common.AnchorageSettings.FLOATING_NODE_DROPSHADOW_RADIUS;
 
+import com.anchorage.docks.containers.common.AnchorageSettings;
+import com.anchorage.docks.containers.common.DockSnapshotService;
 import com.anchorage.docks.node.DockNode;
+import com.anchorage.docks.stations.DockStation;
 
+import javafx.geometry.Bounds;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.effect.BlurType;
 import javafx.scene.effect.DropShadow;
-import javafx.scene.image.ImageView;
-import javafx.scene.image.WritableImage;
 import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
@@ -40,20 +42,32 @@ public class NodeDraggingPreview extends Stage {
   private StackPane transparentRootPanel;
   private StackPane stackPanelContainer;
   private Window owner;
+  private final boolean inScene;
+  private DockStation station;
+  private StackPane sceneOverlay;
+  private Bounds stationScreenBounds;
 
   public NodeDraggingPreview(DockNode node, Window owner, double startX, double startY) {
     super();
     this.node = node;
     this.owner = owner;
-    buildUI(startX, startY);
+    this.station = node.stationProperty().get();
+    this.inScene = AnchorageSettings.isDraggingPreviewInScene() && station != null;
+    if (node.getEffectiveDragFeedback() == DockNode.DragFeedback.SNAPSHOT) {
+      // render the node when the drag starts, even if the preview is shown later
+      DockSnapshotService.snapshot(node);
+    }
+    initOwner(owner);
+    initStyle(StageStyle.TRANSPARENT);
+    if (!inScene) {
+      buildUI(startX, startY);
+    }
   }
 
   private void buildUI(double startX, double startY) {
-    initOwner(owner);
     setX(startX - FLOATING_NODE_DROPSHADOW_RADIUS);
     setY(startY - FLOATING_NODE_DROPSHADOW_RADIUS);
     createContainerPanel();
-    initStyle(StageStyle.TRANSPARENT);
     Scene scene = new Scene(transparentRootPanel,
         node.getWidth() + FLOATING_NODE_DROPSHADOW_RADIUS * 2,
         node.getHeight() + FLOATING_NODE_DROPSHADOW_RADIUS * 2,
@@ -70,17 +84,36 @@ public class NodeDraggingPreview extends Stage {
   }
 
   private void createContainerPanel() {
-    WritableImage ghostImage = node.snapshot(null, null);
-    ImageView imageView = new ImageView(ghostImage);
-    stackPanelContainer = new StackPane(imageView);
+    stackPanelContainer = createGhostPanel();
     transparentRootPanel = new StackPane(stackPanelContainer);
     transparentRootPanel.setPadding(new Insets(FLOATING_NODE_DROPSHADOW_RADIUS));
     transparentRootPanel.setStyle("-fx-background-color:rgba(0,0,0,0);");
-    stackPanelContainer.getStyleClass().add("docknode-floating-stack-container-panel");
-    stackPanelContainer.setEffect(
+    stackPanelContainer.relocate(FLOATING_NODE_DROPSHADOW_RADIUS, FLOATING_NODE_DROPSHADOW_RADIUS);
+  }
+
+  private StackPane createGhostPanel() {
+    StackPane ghostPanel = new StackPane(DockSnapshotService.createGhost(node));
+    ghostPanel.getStyleClass().add("docknode-floating-stack-container-panel");
+    ghostPanel.setEffect(
         new DropShadow(BlurType.GAUSSIAN, new Color(0, 0, 0, 0.6), FLOATING_NODE_DROPSHADOW_RADIUS,
             0.2, 0, 0));
-    stackPanelContainer.relocate(FLOATING_NODE_DROPSHADOW_RADIUS, FLOATING_NODE_DROPSHADOW_RADIUS);
+    return ghostPanel;
+  }
+
+  /**
+   * Shows the preview for a drag started at the given pointer position.
+   *
+   * @param x screen x of the preview
+   * @param y screen y of the preview
+   * @param pointerX screen x of the pointer
+   * @param pointerY screen y of the pointer
+   */
+  public void showPreview(double x, double y, double pointerX, double pointerY) {
+    if (inScene) {
+      move(x, y, pointerX, pointerY);
+    } else {
+      show();
+    }
   }
 
   public void move(double x, double y) {
@@ -88,8 +121,63 @@ public class NodeDraggingPreview extends Stage {
     setY(y);
   }
 
+  /**
+   * Moves the preview. In the in-scene mode the preview is drawn in an overlay
+   * of the station while the pointer stays inside it, and in the native window
+   * once the pointer leaves the station.
+   *
+   * @param x screen x of the preview
+   * @param y screen y of the preview
+   * @param pointerX screen x of the pointer
+   * @param pointerY screen y of the pointer
+   */
+  public void move(double x, double y, double pointerX, double pointerY) {
+    if (!inScene) {
+      move(x, y);
+      return;
+    }
+    if (stationScreenBounds == null) {
+      stationScreenBounds = station.localToScreen(station.getBoundsInLocal());
+    }
+    if (stationScreenBounds != null && stationScreenBounds.contains(pointerX, pointerY)) {
+      if (isShowing()) {
+        hide();
+      }
+      showSceneOverlay();
+      sceneOverlay.relocate(x - stationScreenBounds.getMinX(), y - stationScreenBounds.getMinY());
+    } else {
+      if (sceneOverlay != null) {
+        sceneOverlay.setVisible(false);
+      }
+      if (getScene() == null) {
+        buildUI(x, y);
+      }
+      move(x, y);
+      if (!isShowing()) {
+        show();
+      }
+    }
+  }
+
+  private void showSceneOverlay() {
+    if (sceneOverlay == null) {
+      sceneOverlay = createGhostPanel();
+      sceneOverlay.setManaged(false);
+      sceneOverlay.setMouseTransparent(true);
+      sceneOverlay.resize(node.getWidth(), node.getHeight());
+      station.addOverlay(sceneOverlay);
+    }
+    sceneOverlay.setVisible(true);
+  }
+
   public void closeStage() {
-    transparentRootPanel.getChildren().removeAll();
+    if (sceneOverlay != null) {
+      station.removeOverlay(sceneOverlay);
+      sceneOverlay = null;
+    }
+    if (transparentRootPanel != null) {
+      transparentRootPanel.getChildren().removeAll();
+    }
     setScene(null);
     hide();
   }
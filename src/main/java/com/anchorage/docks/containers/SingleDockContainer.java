@@ -88,6 +88,10 @@ public class SingleDockContainer extends StackPane implements DockContainer {
     private void manageSubContainers(DockNode node, DockNode.DockPosition position, double percentage) {
         Node existNode = getChildren().get(0);
         
+        if (DockCommons.isABorderPosition(position) && existNode instanceof DockSplitterContainer
+                && ((DockSplitterContainer) existNode).putAtEdge(node, position, percentage)) {
+            return;
+        }
         if (DockCommons.isABorderPosition(position)) {
             getChildren().remove(existNode);
             DockSplitterContainer splitter = DockCommons.createSplitter(existNode, node, position, percentage);
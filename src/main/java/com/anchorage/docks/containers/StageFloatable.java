@@ -22,17 +22,17 @@ import static com.anchorage.docks.containers.common.AnchorageSettings.FLOATING_N
 import static com.anchorage.docks.containers.common.AnchorageSettings.FLOATING_NODE_MINIMUM_HEIGHT;
 import static com.anchorage.docks.containers.common.AnchorageSettings.FLOATING_NODE_MINIMUM_WIDTH;
 
+import com.anchorage.docks.containers.common.DockSnapshotService;
 import com.anchorage.docks.node.DockNode;
 import com.anchorage.docks.stations.DockStation;
+import com.anchorage.system.AnchorageSystem;
 import javafx.event.EventHandler;
 import javafx.geometry.Insets;
 import javafx.scene.Cursor;
+import javafx.scene.Node;
 import javafx.scene.Scene;
-import javafx.scene.SnapshotParameters;
 import javafx.scene.effect.BlurType;
 import javafx.scene.effect.DropShadow;
-import javafx.scene.image.ImageView;
-import javafx.scene.image.WritableImage;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
@@ -50,13 +50,14 @@ public class StageFloatable extends Stage {
   private double startWidth;
   private double startY;
   private double startHeight;
-  private ImageView imageView;
+  private Node ghostView;
 
   public StageFloatable(DockNode node, Window owner, double startX, double startY) {
     super();
     this.node = node;
     this.owner = owner;
     buildUI(startX, startY);
+    AnchorageSystem.registerFloatingStage(this);
   }
 
   private void setupMouseEvents() {
@@ -184,9 +185,8 @@ public class StageFloatable extends Stage {
   }
 
   private void createContainerPanel() {
-    WritableImage ghostImage = node.snapshot(new SnapshotParameters(), null);
-    imageView = new ImageView(ghostImage);
-    stackPanelContainer = new StackPane(imageView);
+    ghostView = DockSnapshotService.createGhost(node);
+    stackPanelContainer = new StackPane(ghostView);
     transparentRootPanel = new StackPane(stackPanelContainer);
     transparentRootPanel.setPadding(new Insets(FLOATING_NODE_DROPSHADOW_RADIUS));
     transparentRootPanel.setStyle("-fx-background-color:rgba(0,0,0,0);");
@@ -206,7 +206,8 @@ public class StageFloatable extends Stage {
     DockStation station = node.stationProperty().get();  // save the station
     node.undock();
     node.stationProperty().set(station); // resume station
-    stackPanelContainer.getChildren().remove(imageView);
+    stackPanelContainer.getChildren().remove(ghostView);
+    DockSnapshotService.release(node);
     stackPanelContainer.getChildren().add(node);
     if (node.resizableProperty().get()) {
       setupMouseEvents();
@@ -217,6 +218,7 @@ public class StageFloatable extends Stage {
     transparentRootPanel.getChildren().removeAll();
     setScene(null);
     hide();
+    AnchorageSystem.unregisterFloatingStage(this);
   }
 
   public Insets getPaddingOffset() {
@@ -18,6 +18,10 @@
  */
 package com.anchorage.docks.containers.common;
 
+import java.util.Objects;
+
+import com.anchorage.docks.node.DockNode;
+
 /**
  *
  * @author Alessio
@@ -28,6 +32,12 @@ public class AnchorageSettings {
     public static final int FLOATING_NODE_MINIMUM_HEIGHT = 150;
     
     private static boolean dockingPositionPreview = true;
+    private static boolean dragEventsCoalescing = false;
+    private static boolean singleWindowZones = false;
+    private static boolean draggingPreviewInScene = false;
+    private static double dragSnapshotScale = 1;
+    private static DockNode.DragFeedback dragFeedback = DockNode.DragFeedback.SNAPSHOT;
+    private static boolean layoutNormalization = false;
     
     public static void setDockingPositionPreview(boolean value)
     {
@@ -38,5 +48,105 @@ public class AnchorageSettings {
         return dockingPositionPreview;
     }
     
+    /**
+     * When enabled, mouse drag events only record the latest pointer position
+     * and the dragged preview is moved and the drop target searched once per
+     * JavaFX pulse. When disabled, every drag event is handled immediately.
+     *
+     * @param value true to coalesce drag events
+     */
+    public static void setDragEventsCoalescing(boolean value)
+    {
+        dragEventsCoalescing = value;
+    }
+
+    public static boolean isDragEventsCoalescing() {
+        return dragEventsCoalescing;
+    }
+    
+    /**
+     * When enabled, the selectors shown over the hovered node are drawn inside
+     * the docking overlay window and moved with a translation, instead of in a
+     * separate transparent window moved on every target change. It applies to
+     * the overlays created after the change.
+     *
+     * @param value true to use a single overlay window
+     */
+    public static void setSingleWindowZones(boolean value)
+    {
+        singleWindowZones = value;
+    }
+
+    public static boolean isSingleWindowZones() {
+        return singleWindowZones;
+    }
+    
+    /**
+     * When enabled, the preview of a dragged node is drawn in an overlay of its
+     * station while the pointer stays inside the station, and moves to a
+     * transparent window only when the pointer leaves it.
+     *
+     * @param value true to draw the preview inside the station when possible
+     */
+    public static void setDraggingPreviewInScene(boolean value)
+    {
+        draggingPreviewInScene = value;
+    }
+
+    public static boolean isDraggingPreviewInScene() {
+        return draggingPreviewInScene;
+    }
+    
+    /**
+     * Sets the scale at which dragged nodes are rendered for their preview.
+     * Values below 1 make the snapshot cheaper on large nodes, at the cost of a
+     * blurrier preview.
+     *
+     * @param value the scale, in the range (0, 1]
+     */
+    public static void setDragSnapshotScale(double value)
+    {
+        if (value <= 0 || value > 1) {
+            throw new IllegalArgumentException("The drag snapshot scale must be in the range (0, 1]");
+        }
+        dragSnapshotScale = value;
+    }
+
+    public static double getDragSnapshotScale() {
+        return dragSnapshotScale;
+    }
+    
+    /**
+     * Sets the feedback shown while nodes are dragged, unless a node sets its
+     * own with {@link DockNode#dragFeedbackProperty()}. The outline does not
+     * depend on how expensive the content is to render.
+     *
+     * @param value the drag feedback
+     */
+    public static void setDragFeedback(DockNode.DragFeedback value)
+    {
+        dragFeedback = Objects.requireNonNull(value);
+    }
+
+    public static DockNode.DragFeedback getDragFeedback() {
+        return dragFeedback;
+    }
+
+    /**
+     * When enabled, the container tree of a station is normalized after every
+     * change of its structure: splitters nested in a splitter of the same
+     * orientation are merged into it, and splitters or tab panes left with a
+     * single item are replaced by the item. Disabled by default.
+     *
+     * @param value true to normalize the layouts automatically
+     */
+    public static void setLayoutNormalization(boolean value)
+    {
+        layoutNormalization = value;
+    }
+
+    public static boolean isLayoutNormalization() {
+        return layoutNormalization;
+    }
     
 }
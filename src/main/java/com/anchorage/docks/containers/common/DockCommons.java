@@ -23,13 +23,19 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.anchorage.docks.containers.interfaces.DockContainableComponent;
+import com.anchorage.docks.containers.interfaces.DockContainer;
 import com.anchorage.docks.containers.subcontainers.DockSplitterContainer;
 import com.anchorage.docks.containers.subcontainers.DockTabberContainer;
 import com.anchorage.docks.node.DockNode;
 import com.anchorage.docks.node.DockNode.DockPosition;
+import com.anchorage.docks.node.ui.DockUIPanel;
+import com.anchorage.docks.stations.DockLayoutEvent;
+import com.anchorage.docks.stations.DockStation;
 
 import javafx.geometry.Orientation;
 import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.layout.Pane;
 
 /**
  *
@@ -70,6 +76,31 @@ public class DockCommons {
         return splitter;
     }
 
+    /**
+     * Creates a splitter of any number of nodes.
+     *
+     * @param nodes the items of the splitter, at least two
+     * @param orientation orientation of the splitter
+     * @param dividerPositions positions of the dividers, one less than the nodes
+     * @return the splitter
+     */
+    public static DockSplitterContainer createSplitter(List<Node> nodes, Orientation orientation, double[] dividerPositions) {
+        DockSplitterContainer splitter = createEmptySplitter();
+        splitter.setOrientation(orientation);
+        for (Node node : nodes) {
+            ((DockContainableComponent) node).setParentContainer(splitter);
+        }
+        splitter.getItems().addAll(nodes);
+        splitter.getStyleClass().add("docknode-split-pane");
+        splitter.setDividerPositions(dividerPositions);
+        return splitter;
+    }
+
+    public static Orientation getOrientation(DockNode.DockPosition position) {
+        return (position == DockNode.DockPosition.BOTTOM || position == DockNode.DockPosition.TOP)
+                ? Orientation.VERTICAL : Orientation.HORIZONTAL;
+    }
+
     public static DockSplitterContainer createEmptySplitter() {
         return new DockSplitterContainer();
     }
@@ -97,4 +128,56 @@ public class DockCommons {
     		}
         return tabber;
     }
+
+    /**
+     * Get the station holding the container, by walking up its parent
+     * containers.
+     *
+     * @param container a container
+     * @return the station, or null if the container is not docked
+     */
+    public static DockStation getStation(DockContainer container) {
+        DockContainer current = container;
+        while (current != null && !(current instanceof DockStation)) {
+            current = current.getParentContainer();
+        }
+        return (DockStation) current;
+    }
+
+    /**
+     * Notifies the station holding the container of a change of its layout.
+     *
+     * @param container the container that changed
+     * @param type the type of change
+     * @param node the node affected by the change, or null
+     */
+    public static void fireLayoutChanged(DockContainer container, DockLayoutEvent.Type type, DockNode node) {
+        DockStation station = getStation(container);
+        if (station != null) {
+            station.fireLayoutChanged(new DockLayoutEvent(type, station, node, null, null, 0, container));
+        }
+    }
+
+    /**
+     * Creates the outline shown in place of the snapshot of a dragged node: a
+     * rectangle of the size of the node with its title bar.
+     *
+     * @param node the dragged node
+     * @return the outline
+     */
+    public static Pane createDragOutline(DockNode node) {
+        Label titleLabel = new Label(node.getContent().titleProperty().get());
+        titleLabel.getStyleClass().add("docknode-title-text");
+        titleLabel.relocate(DockUIPanel.TITLE_X, DockUIPanel.TITLE_Y);
+
+        Pane barPanel = new Pane(titleLabel);
+        barPanel.getStyleClass().add("docknode-title-bar");
+        barPanel.resize(node.getWidth(), DockUIPanel.BAR_HEIGHT);
+
+        Pane outline = new Pane(barPanel);
+        outline.getStyleClass().add("docknode-drag-outline");
+        outline.setPrefSize(node.getWidth(), node.getHeight());
+        outline.setMinSize(node.getWidth(), node.getHeight());
+        return outline;
+    }
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015-2016 Alessio Vinerbi. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+
+package com.anchorage.docks.containers.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.anchorage.docks.node.DockNode;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Node;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.WritableImage;
+import javafx.scene.transform.Transform;
+
+/**
+ * Snapshots of dragged nodes. A node is rendered once per drag, at the scale
+ * set with {@link AnchorageSettings#setDragSnapshotScale(double)}, and the
+ * same image is shared by the dragging preview and the floating ghost. The
+ * images are rendered into buffers rounded up to a bucket size, which are
+ * given back to a small pool at the end of the drag and reused by the next
+ * ones.
+ */
+public class DockSnapshotService {
+
+    private static final int BUCKET_SIZE = 64;
+    private static final int MAX_POOLED_BUFFERS = 8;
+
+    private static final Map<Long, WritableImage> pool = new LinkedHashMap<>();
+
+    private static DockNode snapshotNode;
+    private static WritableImage snapshotImage;
+    private static double snapshotWidth;
+    private static double snapshotHeight;
+
+    /**
+     * Get the snapshot of the node for the current drag, rendering it if it has
+     * not been taken yet.
+     *
+     * @param node the dragged node
+     * @return the image holding the snapshot, possibly larger than the node
+     */
+    public static WritableImage snapshot(DockNode node) {
+        if (snapshotNode != node) {
+            release(snapshotNode);
+
+            double scale = AnchorageSettings.getDragSnapshotScale();
+            snapshotWidth = Math.max(1, Math.ceil(node.getWidth() * scale));
+            snapshotHeight = Math.max(1, Math.ceil(node.getHeight() * scale));
+
+            SnapshotParameters parameters = new SnapshotParameters();
+            parameters.setTransform(Transform.scale(scale, scale));
+
+            snapshotImage = node.snapshot(parameters, acquire(snapshotWidth, snapshotHeight));
+            snapshotNode = node;
+        }
+        return snapshotImage;
+    }
+
+    /**
+     * Creates a view of the snapshot of the node, cropped to the rendered area
+     * and sized as the node.
+     *
+     * @param node the dragged node
+     * @return the view of the snapshot
+     */
+    public static ImageView createView(DockNode node) {
+        ImageView imageView = new ImageView(snapshot(node));
+        imageView.setViewport(new Rectangle2D(0, 0, snapshotWidth, snapshotHeight));
+        imageView.setFitWidth(node.getWidth());
+        imageView.setFitHeight(node.getHeight());
+        imageView.setSmooth(true);
+        return imageView;
+    }
+
+    /**
+     * Creates the visual shown in place of a dragged node: a view of its
+     * snapshot, or its outline when the node uses the
+     * {@link DockNode.DragFeedback#OUTLINE} feedback.
+     *
+     * @param node the dragged node
+     * @return the visual of the node
+     */
+    public static Node createGhost(DockNode node) {
+        if (node.getEffectiveDragFeedback() == DockNode.DragFeedback.OUTLINE) {
+            return DockCommons.createDragOutline(node);
+        }
+        return createView(node);
+    }
+
+    /**
+     * Gives the snapshot of the node back to the pool. It must be called once
+     * the views of the snapshot are not shown anymore.
+     *
+     * @param node the node whose drag is over
+     */
+    public static void release(DockNode node) {
+        if (node == null || snapshotNode != node) {
+            return;
+        }
+        long key = bucketKey((int) snapshotImage.getWidth(), (int) snapshotImage.getHeight());
+        pool.remove(key);
+        pool.put(key, snapshotImage);
+        if (pool.size() > MAX_POOLED_BUFFERS) {
+            pool.remove(pool.keySet().iterator().next());
+        }
+        snapshotNode = null;
+        snapshotImage = null;
+    }
+
+    private static WritableImage acquire(double width, double height) {
+        int bucketWidth = bucket(width);
+        int bucketHeight = bucket(height);
+        WritableImage buffer = pool.remove(bucketKey(bucketWidth, bucketHeight));
+        return (buffer != null) ? buffer : new WritableImage(bucketWidth, bucketHeight);
+    }
+
+    private static int bucket(double value) {
+        return (int) Math.ceil(value / BUCKET_SIZE) * BUCKET_SIZE;
+    }
+
+    private static long bucketKey(int width, int height) {
+        return ((long) width << 32) | height;
+    }
+}
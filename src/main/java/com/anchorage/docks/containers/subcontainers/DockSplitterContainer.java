@@ -23,9 +23,14 @@ import com.anchorage.docks.containers.common.DockCommons;
 import com.anchorage.docks.containers.interfaces.DockContainableComponent;
 import com.anchorage.docks.containers.interfaces.DockContainer;
 import com.anchorage.docks.node.DockNode;
+import com.anchorage.docks.stations.DockLayoutEvent;
 
+import javafx.beans.InvalidationListener;
+import javafx.collections.ListChangeListener;
+import javafx.event.EventTarget;
 import javafx.scene.Node;
 import javafx.scene.control.SplitPane;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.BorderPane;
 
 /**
@@ -35,7 +40,41 @@ import javafx.scene.layout.BorderPane;
 public final class DockSplitterContainer extends SplitPane implements DockContainer {
 
     private DockContainer container;
-    
+
+    // only the drags of the user are reported, positions set by code or moved
+    // by a resize of the window are not
+    private boolean draggingDivider;
+    private boolean dividerMoved;
+    private final InvalidationListener dividerListener = observable -> dividerMoved |= draggingDivider;
+
+    public DockSplitterContainer() {
+        getDividers().addListener((ListChangeListener<Divider>) change -> {
+            while (change.next()) {
+                change.getRemoved().forEach(divider -> divider.positionProperty().removeListener(dividerListener));
+                change.getAddedSubList().forEach(divider -> divider.positionProperty().addListener(dividerListener));
+            }
+        });
+        addEventFilter(MouseEvent.MOUSE_PRESSED, event -> draggingDivider = isOwnDivider(event.getTarget()));
+        addEventFilter(MouseEvent.MOUSE_RELEASED, event -> {
+            if (draggingDivider && dividerMoved) {
+                DockCommons.fireLayoutChanged(this, DockLayoutEvent.Type.DIVIDER_MOVED, null);
+            }
+            draggingDivider = false;
+            dividerMoved = false;
+        });
+    }
+
+    private boolean isOwnDivider(EventTarget target) {
+        // the dividers of nested splitters are below this one too
+        Node node = (target instanceof Node) ? (Node) target : null;
+        while (node != null && node != this) {
+            if (node.getStyleClass().contains("split-pane-divider")) {
+                return node.getParent() == this;
+            }
+            node = node.getParent();
+        }
+        return false;
+    }
    
     @Override
     public void putDock(DockNode node, DockNode.DockPosition position, double percentage)  {
@@ -46,6 +85,10 @@ public final class DockSplitterContainer extends SplitPane implements DockContai
     @Override
     public void putDock(DockNode node, DockNode nodeTarget, DockNode.DockPosition position, double percentage) {
 
+        if (DockCommons.isABorderPosition(position) && putBeside(node, nodeTarget, position, percentage)) {
+            return;
+        }
+
         // get index of current node target
         int indexOfTarget = getItems().indexOf(nodeTarget);
 
@@ -69,6 +112,77 @@ public final class DockSplitterContainer extends SplitPane implements DockContai
         getItems().remove(nodeTarget);
     }
     
+    /**
+     * Inserts the node beside one of the items, when the position is along the
+     * orientation of the splitter. The node takes the part of the space of the
+     * item given by the percentage, as in a new splitter of both.
+     *
+     * @param node the node to insert
+     * @param target an item of the splitter
+     * @param position side of the item where to insert the node
+     * @param percentage position of the new divider within the space of the item
+     * @return false if the position is across the orientation of the splitter
+     */
+    public boolean putBeside(Node node, Node target, DockNode.DockPosition position, double percentage) {
+        int indexOfTarget = getItems().indexOf(target);
+        if (DockCommons.getOrientation(position) != getOrientation() || indexOfTarget < 0) {
+            return false;
+        }
+        double[] positions = getDividerPositions();
+        double start = (indexOfTarget == 0) ? 0 : positions[indexOfTarget - 1];
+        double end = (indexOfTarget == positions.length) ? 1 : positions[indexOfTarget];
+
+        // the new divider sits between the target and the node, whichever comes first
+        double[] newPositions = new double[positions.length + 1];
+        System.arraycopy(positions, 0, newPositions, 0, indexOfTarget);
+        newPositions[indexOfTarget] = start + (end - start) * percentage;
+        System.arraycopy(positions, indexOfTarget, newPositions, indexOfTarget + 1, positions.length - indexOfTarget);
+
+        ((DockContainableComponent) node).setParentContainer(this);
+        getItems().add(isAfter(position) ? indexOfTarget + 1 : indexOfTarget, node);
+        setDividerPositions(newPositions);
+        return true;
+    }
+
+    /**
+     * Inserts the node as the first or last item, when the position is along
+     * the orientation of the splitter. The items already there share the part
+     * of the space given by the percentage, as in a new splitter of the
+     * splitter and the node.
+     *
+     * @param node the node to insert
+     * @param position side of the splitter where to insert the node
+     * @param percentage position of the new divider
+     * @return false if the position is across the orientation of the splitter
+     */
+    public boolean putAtEdge(Node node, DockNode.DockPosition position, double percentage) {
+        if (DockCommons.getOrientation(position) != getOrientation()) {
+            return false;
+        }
+        double[] positions = getDividerPositions();
+        double[] newPositions = new double[positions.length + 1];
+        if (isAfter(position)) {
+            for (int i = 0; i < positions.length; i++) {
+                newPositions[i] = positions[i] * percentage;
+            }
+            newPositions[positions.length] = percentage;
+        } else {
+            newPositions[0] = percentage;
+            for (int i = 0; i < positions.length; i++) {
+                newPositions[i + 1] = percentage + positions[i] * (1 - percentage);
+            }
+        }
+
+        ((DockContainableComponent) node).setParentContainer(this);
+        getItems().add(isAfter(position) ? getItems().size() : 0, node);
+        setDividerPositions(newPositions);
+        return true;
+    }
+
+    private static boolean isAfter(DockNode.DockPosition position) {
+        return position == DockNode.DockPosition.BOTTOM || position == DockNode.DockPosition.RIGHT;
+    }
+
     @Override
     public boolean isDockVisible(DockNode node)
     {
@@ -77,6 +191,11 @@ public final class DockSplitterContainer extends SplitPane implements DockContai
 
     @Override
     public void undock(DockNode node) {
+        if (getItems().size() > 2) {
+            removeItem(node);
+            node.setParentContainer(null);
+            return;
+        }
         Node remainingNode = (getItems().get(0) == node) ?  getItems().get(1) : getItems().get(0);
         getItems().remove(remainingNode);
         getItems().remove(node);
@@ -95,6 +214,30 @@ public final class DockSplitterContainer extends SplitPane implements DockContai
         
     }
 
+    /**
+     * Removes an item of a splitter holding more than two, giving its space to
+     * the previous item, or to the next one for the first item.
+     */
+    private void removeItem(Node node) {
+        int index = getItems().indexOf(node);
+        double[] positions = getDividerPositions();
+        double[] newPositions = new double[positions.length - 1];
+        int removedDivider = (index > 0) ? index - 1 : 0;
+        for (int i = 0, j = 0; i < positions.length; i++) {
+            if (i != removedDivider) {
+                newPositions[j++] = positions[i];
+            }
+        }
+        getItems().remove(node);
+
+        // WORKAROUND for bug on split panel. After  getItems().remove(node) the parent of node is not set to null !!!!!
+        BorderPane workAroundPane = new BorderPane(node);
+        workAroundPane.getChildren().remove(node);
+        // END WORKAROUND
+
+        setDividerPositions(newPositions);
+    }
+
     @Override
     public void insertNode(Node node, int index) {
         getItems().set(index, node);
@@ -21,6 +21,13 @@ package com.anchorage.docks.containers.subcontainers;
 import com.anchorage.docks.containers.common.DockCommons;
 import com.anchorage.docks.containers.interfaces.DockContainer;
 import com.anchorage.docks.node.DockNode;
+import com.anchorage.docks.stations.DockLayoutEvent;
+import com.anchorage.docks.stations.DockStation;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import javafx.beans.property.ReadOnlyProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.collections.ListChangeListener;
 import javafx.scene.Node;
 import javafx.scene.control.Label;
 import javafx.scene.control.Tab;
@@ -32,6 +39,37 @@ import javafx.scene.control.TabPane;
 public final class DockTabberContainer extends TabPane implements DockContainer {
 
   private DockContainer container;
+  private final Map<DockNode, Tab> tabsByNode = new IdentityHashMap<>();
+  private final Map<Tab, Integer> tabIndexes = new IdentityHashMap<>();
+  private boolean tabIndexesValid;
+  private final ChangeListener<Node> contentListener = (observable, oldValue, newValue) -> {
+    Tab tab = (Tab) ((ReadOnlyProperty<?>) observable).getBean();
+    unmapContent(tab, oldValue);
+    mapContent(tab, newValue);
+  };
+
+  public DockTabberContainer() {
+    // the tabs are indexed by their content, whoever changes them
+    getTabs().addListener((ListChangeListener<Tab>) change -> {
+      while (change.next()) {
+        for (Tab tab : change.getRemoved()) {
+          tab.contentProperty().removeListener(contentListener);
+          unmapContent(tab, tab.getContent());
+        }
+        for (Tab tab : change.getAddedSubList()) {
+          tab.contentProperty().addListener(contentListener);
+          mapContent(tab, tab.getContent());
+        }
+      }
+      tabIndexesValid = false;
+    });
+    getSelectionModel().selectedItemProperty().addListener((observable, oldValue, newValue) -> {
+      if (newValue != null && newValue.getContent() instanceof DockNode) {
+        DockCommons.fireLayoutChanged(this, DockLayoutEvent.Type.TAB_SELECTED,
+            (DockNode) newValue.getContent());
+      }
+    });
+  }
 
   @Override
   public void putDock(DockNode node, DockNode.DockPosition position, double percentage) {
@@ -59,6 +97,10 @@ public final class DockTabberContainer extends TabPane implements DockContainer
 
   private void createSplitter(DockNode node, DockNode.DockPosition position) {
     DockContainer currentContainer = container;
+    if (currentContainer instanceof DockSplitterContainer
+        && ((DockSplitterContainer) currentContainer).putBeside(node, this, position, 0.5)) {
+      return;
+    }
     DockSplitterContainer splitter = DockCommons.createSplitter(this, node, position, 0.5);
     int indexOf = currentContainer.indexOf(this);
     currentContainer.insertNode(splitter, indexOf);
@@ -66,16 +108,26 @@ public final class DockTabberContainer extends TabPane implements DockContainer
     container = splitter;
   }
 
+  private void mapContent(Tab tab, Node content) {
+    if (content instanceof DockNode) {
+      tabsByNode.put((DockNode) content, tab);
+    }
+  }
+
+  private void unmapContent(Tab tab, Node content) {
+    if (content instanceof DockNode && tabsByNode.get(content) == tab) {
+      tabsByNode.remove(content);
+    }
+  }
+
   private Tab getTabByNode(DockNode node) {
-    return getTabs().stream()
-        .filter(t -> t.getContent() == node)
-        .findFirst().orElse(null);
+    return tabsByNode.get(node);
   }
 
   @Override
   public boolean isDockVisible(DockNode node) {
-    Tab nodeTab = getTabByNode(node);
-    return getSelectionModel().getSelectedItem() == nodeTab;
+    Tab selectedTab = getSelectionModel().getSelectedItem();
+    return (selectedTab != null) ? selectedTab.getContent() == node : !tabsByNode.containsKey(node);
   }
 
   @Override
@@ -92,16 +144,18 @@ public final class DockTabberContainer extends TabPane implements DockContainer
 
   @Override
   public int indexOf(Node node) {
-    int index = 0;
-    boolean found = false;
-    for (Tab tab : getTabs()) {
-      if (tab.getContent() == node) {
-        found = true;
-        break;
+    Tab tab = tabsByNode.get(node);
+    if (tab == null) {
+      return -1;
+    }
+    if (!tabIndexesValid) {
+      tabIndexes.clear();
+      for (int i = 0; i < getTabs().size(); i++) {
+        tabIndexes.put(getTabs().get(i), i);
       }
-      index++;
+      tabIndexesValid = true;
     }
-    return (found) ? index : -1;
+    return tabIndexes.get(tab);
   }
 
   @Override
@@ -147,14 +201,24 @@ public final class DockTabberContainer extends TabPane implements DockContainer
       node.undock();
       node.dock(otherNode, position);
     } else if (getTabByNode(node) != null && getTabs().size() > 2) {
+      DockStation station = node.stationProperty().get();
       node.undock();
       DockContainer currentContainer = container;
+      if (currentContainer instanceof DockSplitterContainer
+          && ((DockSplitterContainer) currentContainer).putBeside(node, this, position, 0.5)) {
+        station.add(node);
+        node.stationProperty().set(station);
+        DockCommons.fireLayoutChanged(this, DockLayoutEvent.Type.REARRANGED, node);
+        return;
+      }
       DockSplitterContainer splitter = DockCommons.createSplitter(this, node, position, 0.5);
       int indexOf = currentContainer.indexOf(this);
       currentContainer.insertNode(splitter, indexOf);
       currentContainer.removeNode(this);
       container = splitter;
-      node.stationProperty().get().add(node);
+      station.add(node);
+      node.stationProperty().set(station);
+      DockCommons.fireLayoutChanged(this, DockLayoutEvent.Type.REARRANGED, node);
     }
   }
 
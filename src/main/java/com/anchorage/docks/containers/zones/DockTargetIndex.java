@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015-2016 Alessio Vinerbi. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.anchorage.docks.containers.zones;
+
+import com.anchorage.docks.node.DockNode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+
+/**
+ * Uniform grid of dock screen rectangles, built once when a drag starts so
+ * that every pointer move only tests the docks sharing the pointer's cell.
+ */
+public final class DockTargetIndex {
+
+  private static final double CELL_SIZE = 128;
+
+  private final Map<Long, List<Entry>> cells;
+  private final Map<DockNode, Entry> entries;
+
+  private DockTargetIndex() {
+    cells = new HashMap<>();
+    entries = new IdentityHashMap<>();
+  }
+
+  /**
+   * Builds the index over the screen bounds of the given nodes. Floating nodes
+   * and nodes not attached to a window are left out.
+   *
+   * @param nodes candidate nodes, in station order
+   * @return the index
+   */
+  public static DockTargetIndex build(List<DockNode> nodes) {
+    DockTargetIndex index = new DockTargetIndex();
+    int order = 0;
+    for (DockNode node : nodes) {
+      if (!node.floatingProperty().get()) {
+        Bounds bounds = node.getScreenBounds();
+        if (bounds != null) {
+          index.insert(new Entry(node, bounds, order));
+        }
+      }
+      order++;
+    }
+    return index;
+  }
+
+  private void insert(Entry entry) {
+    entries.put(entry.node, entry);
+    int minColumn = cellOf(entry.minX);
+    int maxColumn = cellOf(entry.maxX);
+    int minRow = cellOf(entry.minY);
+    int maxRow = cellOf(entry.maxY);
+    for (int column = minColumn; column <= maxColumn; column++) {
+      for (int row = minRow; row <= maxRow; row++) {
+        cells.computeIfAbsent(key(column, row), k -> new ArrayList<>()).add(entry);
+      }
+    }
+  }
+
+  /**
+   * Returns the visible node under the given screen point. When nodes overlap,
+   * the first one in station order wins, as with a linear scan.
+   *
+   * @param x screen x
+   * @param y screen y
+   * @return the node under the point, or null
+   */
+  public DockNode search(double x, double y) {
+    List<Entry> cell = cells.get(key(cellOf(x), cellOf(y)));
+    if (cell == null) {
+      return null;
+    }
+    Entry found = null;
+    for (Entry entry : cell) {
+      if ((found == null || entry.order < found.order)
+          && entry.contains(x, y)
+          && entry.node.isDockVisible()) {
+        found = entry;
+      }
+    }
+    return (found != null) ? found.node : null;
+  }
+
+  /**
+   * Get the screen bounds captured for the node
+   *
+   * @param node an indexed node
+   * @return the captured bounds, or null if the node is not indexed
+   */
+  public Bounds getScreenBounds(DockNode node) {
+    Entry entry = entries.get(node);
+    return (entry != null) ? entry.bounds : null;
+  }
+
+  private static int cellOf(double value) {
+    return (int) Math.floor(value / CELL_SIZE);
+  }
+
+  private static long key(int column, int row) {
+    return ((long) column << 32) | (row & 0xffffffffL);
+  }
+
+  private static final class Entry {
+
+    private final DockNode node;
+    private final Bounds bounds;
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+    private final int order;
+
+    private Entry(DockNode node, Bounds bounds, int order) {
+      this.node = node;
+      this.bounds = new BoundingBox(bounds.getMinX(), bounds.getMinY(), bounds.getWidth(),
+          bounds.getHeight());
+      this.minX = bounds.getMinX();
+      this.minY = bounds.getMinY();
+      this.maxX = bounds.getMaxX();
+      this.maxY = bounds.getMaxY();
+      this.order = order;
+    }
+
+    private boolean contains(double x, double y) {
+      return x >= minX && x <= maxX && y >= minY && y <= maxY;
+    }
+  }
+}
@@ -50,6 +50,7 @@ import javafx.util.Duration;
 public final class DockZones extends Stage {
 
 	private static final double CIRCLE_RADIUS = 100;
+	private static final double CIRCLE_SIZE = CIRCLE_RADIUS * 2;
 	public static final int OFFSET_IMAGE = 15;
 
 	///////// MAIN STAGE SCENE AND ROOT
@@ -62,6 +63,7 @@ public final class DockZones extends Stage {
 	private Scene circleStageScene;
 	private Pane circleStageRoot;
 	private Circle circleZone;
+	private final boolean singleWindow;
 	////////////////////////////////////
 
 	private static Image dragTopImage;
@@ -71,6 +73,9 @@ public final class DockZones extends Stage {
 	private static Image dragCenterImage;
 
 	private List<ZoneSelector> selectors;
+	private List<ZoneSelector> stationSelectors;
+	private List<ZoneSelector> nodeSelectors;
+	private ZoneSelector emptyStationSelector;
 
 	///////////////////////////////////////////////
 	private DockStation ownerStation;
@@ -84,6 +89,8 @@ public final class DockZones extends Stage {
 
 	private Rectangle rectanglePreview;
 	private Timeline opacityAnimationPreview;
+	private ZonePreviewTable previewTable;
+	private int previewTableGeneration;
 
 	static {
 		dragTopImage = new Image("dragtop.png");
@@ -93,14 +100,16 @@ public final class DockZones extends Stage {
 		dragCenterImage = new Image("dragcenter.png");
 	}
 
-	private DockZones() {
+	/**
+	 * Creates the overlay of a station. The overlay is kept by the station and
+	 * reused for every drag, see {@link #prepare(DockNode)}.
+	 *
+	 * @param station owner station
+	 */
+	public DockZones(DockStation station) {
 
-	}
-
-	public DockZones(DockStation station, DockNode nodeToMove) {
-
-		this.nodeToMove = nodeToMove;
 		this.ownerStation = station;
+		this.singleWindow = AnchorageSettings.isSingleWindowZones();
 
 		initOwner(ownerStation.getStationWindow());
 		initStyle(StageStyle.TRANSPARENT);
@@ -112,7 +121,9 @@ public final class DockZones extends Stage {
 		createRectangleForPreview();
 
 		setAlwaysOnTop(true);
-		circleStage.setAlwaysOnTop(true);
+		if (circleStage != null) {
+			circleStage.setAlwaysOnTop(true);
+		}
 	}
 
 	private void createRectangleForPreview() {
@@ -132,31 +143,75 @@ public final class DockZones extends Stage {
 	private void makeSelectors() {
 		selectors = new ArrayList<>();
 
-		if (ownerStation.getChildren().size() > 0) {
-			// selectors of station
-			selectors.add(new ZoneSelector(dragTopImage, DockNode.DockPosition.TOP, true, mainRoot, (mainRoot.getWidth() - dragTopImage.getWidth()) / 2, OFFSET_IMAGE));
-			selectors.add(new ZoneSelector(dragBottomImage, DockNode.DockPosition.BOTTOM, true, mainRoot, (mainRoot.getWidth() - dragTopImage.getWidth()) / 2, mainRoot.getHeight() - dragBottomImage.getHeight() - OFFSET_IMAGE));
-			selectors.add(new ZoneSelector(dragLeftImage, DockNode.DockPosition.LEFT, true, mainRoot, OFFSET_IMAGE, (mainRoot.getHeight() - dragLeftImage.getWidth()) / 2));
-			selectors.add(new ZoneSelector(dragRightImage, DockNode.DockPosition.RIGHT, true, mainRoot, (mainRoot.getWidth() - dragRightImage.getWidth() - OFFSET_IMAGE), (mainRoot.getHeight() - dragRightImage.getWidth()) / 2));
-
-			// selectors of node
-			selectors.add(new ZoneSelector(dragTopImage, DockNode.DockPosition.TOP, false, circleStageRoot, (circleStageRoot.getWidth() - dragTopImage.getWidth()) / 2, OFFSET_IMAGE));
-			selectors.add(new ZoneSelector(dragBottomImage, DockNode.DockPosition.BOTTOM, false, circleStageRoot, (circleStageRoot.getWidth() - dragBottomImage.getWidth()) / 2, circleStageRoot.getHeight() - dragBottomImage.getHeight() - OFFSET_IMAGE));
-			selectors.add(new ZoneSelector(dragLeftImage, DockNode.DockPosition.LEFT, false, circleStageRoot, OFFSET_IMAGE, (circleStageRoot.getHeight() - dragLeftImage.getHeight()) / 2));
-			selectors.add(new ZoneSelector(dragRightImage, DockNode.DockPosition.RIGHT, false, circleStageRoot, circleStageRoot.getWidth() - dragRightImage.getWidth() - OFFSET_IMAGE, (circleStageRoot.getHeight() - dragRightImage.getHeight()) / 2));
-			selectors.add(new ZoneSelector(dragCenterImage, DockNode.DockPosition.CENTER, false, circleStageRoot, (circleStageRoot.getWidth() - dragCenterImage.getWidth()) / 2, (circleStageRoot.getHeight() - dragCenterImage.getHeight()) / 2));
+		// selectors of station
+		stationSelectors = new ArrayList<>();
+		stationSelectors.add(new ZoneSelector(dragTopImage, DockNode.DockPosition.TOP, true, mainRoot, 0, 0));
+		stationSelectors.add(new ZoneSelector(dragBottomImage, DockNode.DockPosition.BOTTOM, true, mainRoot, 0, 0));
+		stationSelectors.add(new ZoneSelector(dragLeftImage, DockNode.DockPosition.LEFT, true, mainRoot, 0, 0));
+		stationSelectors.add(new ZoneSelector(dragRightImage, DockNode.DockPosition.RIGHT, true, mainRoot, 0, 0));
+
+		// selectors of node
+		nodeSelectors = new ArrayList<>();
+		nodeSelectors.add(new ZoneSelector(dragTopImage, DockNode.DockPosition.TOP, false, circleStageRoot, (CIRCLE_SIZE - dragTopImage.getWidth()) / 2, OFFSET_IMAGE));
+		nodeSelectors.add(new ZoneSelector(dragBottomImage, DockNode.DockPosition.BOTTOM, false, circleStageRoot, (CIRCLE_SIZE - dragBottomImage.getWidth()) / 2, CIRCLE_SIZE - dragBottomImage.getHeight() - OFFSET_IMAGE));
+		nodeSelectors.add(new ZoneSelector(dragLeftImage, DockNode.DockPosition.LEFT, false, circleStageRoot, OFFSET_IMAGE, (CIRCLE_SIZE - dragLeftImage.getHeight()) / 2));
+		nodeSelectors.add(new ZoneSelector(dragRightImage, DockNode.DockPosition.RIGHT, false, circleStageRoot, CIRCLE_SIZE - dragRightImage.getWidth() - OFFSET_IMAGE, (CIRCLE_SIZE - dragRightImage.getHeight()) / 2));
+		nodeSelectors.add(new ZoneSelector(dragCenterImage, DockNode.DockPosition.CENTER, false, circleStageRoot, (CIRCLE_SIZE - dragCenterImage.getWidth()) / 2, (CIRCLE_SIZE - dragCenterImage.getHeight()) / 2));
+
+		// selector of empty station
+		emptyStationSelector = new ZoneSelector(dragCenterImage, DockNode.DockPosition.CENTER, true, mainRoot, 0, 0);
+	}
+
+	private void layoutSelectors(double width, double height) {
+		stationSelectors.get(0).relocate((width - dragTopImage.getWidth()) / 2, OFFSET_IMAGE);
+		stationSelectors.get(1).relocate((width - dragTopImage.getWidth()) / 2, height - dragBottomImage.getHeight() - OFFSET_IMAGE);
+		stationSelectors.get(2).relocate(OFFSET_IMAGE, (height - dragLeftImage.getWidth()) / 2);
+		stationSelectors.get(3).relocate((width - dragRightImage.getWidth() - OFFSET_IMAGE), (height - dragRightImage.getWidth()) / 2);
+		emptyStationSelector.relocate((width - dragCenterImage.getWidth()) / 2, (height - dragCenterImage.getHeight()) / 2);
 
+		selectors.clear();
+		if (ownerStation.getChildren().size() > 0) {
+			selectors.addAll(stationSelectors);
+			selectors.addAll(nodeSelectors);
 		} else {
-			selectors.add(new ZoneSelector(dragCenterImage, DockNode.DockPosition.CENTER, true, mainRoot, (mainRoot.getWidth() - dragCenterImage.getWidth()) / 2, (mainRoot.getHeight() - dragCenterImage.getHeight()) / 2));
+			selectors.add(emptyStationSelector);
 		}
 
+		stationSelectors.forEach(z -> z.setVisible(selectors.contains(z)));
+		nodeSelectors.forEach(z -> z.setVisible(selectors.contains(z)));
+		emptyStationSelector.setVisible(selectors.contains(emptyStationSelector));
 	}
 
-	private void buildCircleStage() {
+	/**
+	 * Prepares the overlay for a new drag: clears the state left by the
+	 * previous drag and fits the overlay on the current bounds of the station.
+	 *
+	 * @param nodeToMove the dragged node
+	 */
+	public void prepare(DockNode nodeToMove) {
 
-		circleStage = new Stage();
-		circleStage.initStyle(StageStyle.TRANSPARENT);
-		circleStage.initOwner(this);
+		this.nodeToMove = nodeToMove;
+
+		hideCircleZones();
+		selectors.forEach(z -> z.setZoneDisabled(false));
+
+		Point2D screenOrigin = ownerStation.localToScreen(ownerStation.getBoundsInLocal().getMinX(), ownerStation.getBoundsInLocal().getMinY());
+
+		setX(screenOrigin.getX());
+		setY(screenOrigin.getY());
+		setWidth(ownerStation.getWidth());
+		setHeight(ownerStation.getHeight());
+
+		layoutSelectors(ownerStation.getWidth(), ownerStation.getHeight());
+		selectors.forEach(z -> z.reset());
+
+		previewTable = null;
+		if (AnchorageSettings.isDockingPositionPreview()) {
+			buildPreviewTable();
+		}
+	}
+
+	private void buildCircleStage() {
 
 		circleZone = new Circle(CIRCLE_RADIUS);
 		circleZone.setCenterX(CIRCLE_RADIUS);
@@ -166,13 +221,32 @@ public final class DockZones extends Stage {
 		circleStageRoot = new Pane(circleZone);
 		circleStageRoot.setStyle("-fx-background-color:rgba(0,0,0,0);");
 
-		circleStageScene = new Scene(circleStageRoot, CIRCLE_RADIUS * 2, CIRCLE_RADIUS * 2, Color.TRANSPARENT);
+		if (singleWindow) {
+			// the selectors of node are drawn inside the main scene and moved with a translation
+			circleStageRoot.resize(CIRCLE_SIZE, CIRCLE_SIZE);
+			mainRoot.getChildren().add(circleStageRoot);
+		} else {
+			circleStage = new Stage();
+			circleStage.initStyle(StageStyle.TRANSPARENT);
+			circleStage.initOwner(this);
+
+			circleStageScene = new Scene(circleStageRoot, CIRCLE_SIZE, CIRCLE_SIZE, Color.TRANSPARENT);
 
-		circleStage.setScene(circleStageScene);
+			circleStage.setScene(circleStageScene);
+		}
 
 		circleStageRoot.setOpacity(0);
 	}
 
+	/**
+	 * Get the value of singleWindow
+	 *
+	 * @return true if the selectors of node are drawn inside the overlay window
+	 */
+	public boolean isSingleWindow() {
+		return singleWindow;
+	}
+
 	private void buildUI() {
 
 		mainRoot = new Pane();
@@ -182,30 +256,46 @@ public final class DockZones extends Stage {
 
 		setScene(scene);
 
-		Point2D screenOrigin = ownerStation.localToScreen(ownerStation.getBoundsInLocal().getMinX(), ownerStation.getBoundsInLocal().getMinY());
-
-		setX(screenOrigin.getX());
-		setY(screenOrigin.getY());
-
 	}
 
 	public void showZones() {
 		show();
-		circleStage.show();
+		if (circleStage != null) {
+			circleStage.show();
+		}
+	}
+
+	public void hideZones() {
+		stopAnimatePreview();
+		if (circleStage != null) {
+			circleStage.hide();
+		}
+		hide();
 	}
 
 	public void moveAt(DockNode node) {
 
 		currentNodeTarget = node;
 
-		Bounds screenBounds = node.getScreenBounds();
+		Bounds screenBounds = (ownerStation.getDragGeometry().isCaptured())
+				? ownerStation.getDragGeometry().getScreenBounds(node)
+				: node.getScreenBounds();
 
 		if (circleStageRoot.opacityProperty().get() == 0) {
 			circleStageRoot.setOpacity(1);
 		}
 
-		circleStage.setX(screenBounds.getMinX() + (screenBounds.getWidth() - circleStageRoot.getWidth()) / 2);
-		circleStage.setY(screenBounds.getMinY() + (screenBounds.getHeight() - circleStageRoot.getHeight()) / 2);
+		double circleX = screenBounds.getMinX() + (screenBounds.getWidth() - CIRCLE_SIZE) / 2;
+		double circleY = screenBounds.getMinY() + (screenBounds.getHeight() - CIRCLE_SIZE) / 2;
+
+		if (singleWindow) {
+			circleStageRoot.setTranslateX(circleX - getX() - scene.getX());
+			circleStageRoot.setTranslateY(circleY - getY() - scene.getY());
+		} else if (circleStage.getX() != circleX || circleStage.getY() != circleY) {
+			// the target is searched on every drag event, move the window only when it changes
+			circleStage.setX(circleX);
+			circleStage.setY(circleY);
+		}
 
 	}
 
@@ -312,53 +402,22 @@ public final class DockZones extends Stage {
 
 	private void showPreview(Bounds sceneBounds, ZoneSelector selector) {
 
-		if (selector.getPosition() == DockNode.DockPosition.LEFT) {
+		double[] preview = new double[4];
+		ZonePreviewTable.computePreview(sceneBounds, selector.getPosition(), preview, 0);
 
-			rectanglePreview.setX(sceneBounds.getMinX());
-			rectanglePreview.setY(sceneBounds.getMinY());
-			rectanglePreview.setWidth(sceneBounds.getWidth() / 2);
-			rectanglePreview.setHeight(sceneBounds.getHeight());
-		}
-
-		if (selector.getPosition() == DockNode.DockPosition.TOP) {
-
-			rectanglePreview.setX(sceneBounds.getMinX());
-			rectanglePreview.setY(sceneBounds.getMinY());
-			rectanglePreview.setWidth(sceneBounds.getWidth());
-			rectanglePreview.setHeight(sceneBounds.getHeight() / 2);
-
-		}
-
-		if (selector.getPosition() == DockNode.DockPosition.RIGHT) {
-
-			rectanglePreview.setX(sceneBounds.getMinX() + sceneBounds.getWidth() / 2);
-			rectanglePreview.setY(sceneBounds.getMinY());
-			rectanglePreview.setWidth(sceneBounds.getWidth() / 2);
-			rectanglePreview.setHeight(sceneBounds.getHeight());
-		}
-
-		if (selector.getPosition() == DockNode.DockPosition.BOTTOM) {
-
-			rectanglePreview.setX(sceneBounds.getMinX());
-			rectanglePreview.setY(sceneBounds.getMinY() + sceneBounds.getHeight() / 2);
-			rectanglePreview.setWidth(sceneBounds.getWidth());
-			rectanglePreview.setHeight(sceneBounds.getHeight() / 2);
-
-		}
-
-		if (selector.getPosition() == DockNode.DockPosition.CENTER) {
-
-			rectanglePreview.setX(sceneBounds.getMinX());
-			rectanglePreview.setY(sceneBounds.getMinY());
-			rectanglePreview.setWidth(sceneBounds.getWidth());
-			rectanglePreview.setHeight(sceneBounds.getHeight());
-		}
+		rectanglePreview.setX(preview[0]);
+		rectanglePreview.setY(preview[1]);
+		rectanglePreview.setWidth(preview[2]);
+		rectanglePreview.setHeight(preview[3]);
 	}
 
 	private void animatePreview() {
 		stopAnimatePreview();
 		rectanglePreview.setOpacity(1);
 		rectanglePreview.toFront();
+		if (singleWindow) {
+			circleStageRoot.toFront();
+		}
 		opacityAnimationPreview.play();
 	}
 
@@ -370,37 +429,77 @@ public final class DockZones extends Stage {
 
 		if (AnchorageSettings.isDockingPositionPreview()) {
 
-			if (selector.isStationZone()) {
-				Bounds sceneBounds = ownerStation.getBoundsInParent();
-				showPreview(sceneBounds, selector);
-			} else {
-				if (currentNodeTarget == null || ownerStation.getBoundsInLocal() == null) {
+			if (!selector.isStationZone() && currentNodeTarget == null) {
+				return;
+			}
+
+			if (previewTable == null || previewTableGeneration != ownerStation.getDragGeometry().getGeneration()) {
+				buildPreviewTable();
+			}
+
+			DockNode target = (selector.isStationZone()) ? null : currentNodeTarget;
+			if (!previewTable.applyTo(target, selector.getPosition(), rectanglePreview)) {
+				Bounds targetBounds = computeTargetBounds(currentNodeTarget);
+				if (targetBounds == null) {
 					return;
 				}
-				Bounds nodeSceneBounds = currentNodeTarget.localToScene(currentNodeTarget.getBoundsInLocal());
-
-				Bounds stationSceneBounds = ownerStation.localToScene(ownerStation.getBoundsInLocal());
+				showPreview(targetBounds, selector);
+			}
 
-				Bounds sceneBounds = new BoundingBox(nodeSceneBounds.getMinX() - stationSceneBounds.getMinX(),
-						nodeSceneBounds.getMinY() - stationSceneBounds.getMinY(),
-						nodeSceneBounds.getWidth(), nodeSceneBounds.getHeight());
+			animatePreview();
+		}
 
-				if (ownerStation.isSubStation()) {
-					DockSubStation subStationNode = ownerStation.getDockNodeForSubStation();
+	}
 
-					if (subStationNode.floatingProperty().get()) {
-						sceneBounds = new BoundingBox(sceneBounds.getMinX() - FLOATING_NODE_DROPSHADOW_RADIUS - subStationNode.getFloatableStage().getPaddingOffset().getLeft(),
-								sceneBounds.getMinY() - FLOATING_NODE_DROPSHADOW_RADIUS - subStationNode.getFloatableStage().getPaddingOffset().getTop() - DockUIPanel.BAR_HEIGHT,
-								sceneBounds.getWidth(),
-								sceneBounds.getHeight());
-					}
-				}
-				showPreview(sceneBounds, selector);
+	/**
+	 * Computes the docking previews of every target of the station, so that
+	 * changing the highlighted zone during the drag does not transform bounds.
+	 */
+	private void buildPreviewTable() {
+		List<DockNode> targets = new ArrayList<>();
+		for (DockNode node : ownerStation.getDockNodes()) {
+			if (!node.floatingProperty().get() && node.getScene() != null) {
+				targets.add(node);
 			}
+		}
+		previewTable = ZonePreviewTable.build(ownerStation.getBoundsInParent(), targets, this::computeTargetBounds);
+		previewTableGeneration = ownerStation.getDragGeometry().getGeneration();
+	}
 
-			animatePreview();
+	/**
+	 * Get the table of the docking previews of the current drag
+	 *
+	 * @return the table, or null if it has not been built
+	 */
+	public ZonePreviewTable getPreviewTable() {
+		return previewTable;
+	}
+
+	private Bounds computeTargetBounds(DockNode target) {
+
+		if (ownerStation.getBoundsInLocal() == null || target.getScene() == null) {
+			return null;
 		}
 
+		Bounds nodeSceneBounds = target.localToScene(target.getBoundsInLocal());
+
+		Bounds stationSceneBounds = ownerStation.localToScene(ownerStation.getBoundsInLocal());
+
+		Bounds sceneBounds = new BoundingBox(nodeSceneBounds.getMinX() - stationSceneBounds.getMinX(),
+				nodeSceneBounds.getMinY() - stationSceneBounds.getMinY(),
+				nodeSceneBounds.getWidth(), nodeSceneBounds.getHeight());
+
+		if (ownerStation.isSubStation()) {
+			DockSubStation subStationNode = ownerStation.getDockNodeForSubStation();
+
+			if (subStationNode.floatingProperty().get()) {
+				sceneBounds = new BoundingBox(sceneBounds.getMinX() - FLOATING_NODE_DROPSHADOW_RADIUS - subStationNode.getFloatableStage().getPaddingOffset().getLeft(),
+						sceneBounds.getMinY() - FLOATING_NODE_DROPSHADOW_RADIUS - subStationNode.getFloatableStage().getPaddingOffset().getTop() - DockUIPanel.BAR_HEIGHT,
+						sceneBounds.getWidth(),
+						sceneBounds.getHeight());
+			}
+		}
+		return sceneBounds;
 	}
 
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015-2016 Alessio Vinerbi. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.anchorage.docks.containers.zones;
+
+import com.anchorage.docks.node.DockNode;
+import com.anchorage.docks.stations.DockStation;
+import javafx.beans.InvalidationListener;
+import javafx.beans.value.ChangeListener;
+import javafx.geometry.Bounds;
+import javafx.geometry.Rectangle2D;
+import javafx.stage.Window;
+
+/**
+ * Screen geometry of a station captured for the duration of a drag. The
+ * layout does not change while dragging, so the bounds of the station window
+ * and of its docks are taken once and read on every pointer move. Moving or
+ * resizing the window, or any layout request inside the station, marks the
+ * snapshot as stale and it is captured again on the next read.
+ */
+public final class DragGeometryCache {
+
+  private final DockStation station;
+  private final InvalidationListener windowListener;
+  private final ChangeListener<Boolean> layoutListener;
+
+  private Window window;
+  private boolean captured;
+  private boolean valid;
+  private int generation;
+  private Rectangle2D windowBounds;
+  private DockTargetIndex targetIndex;
+
+  public DragGeometryCache(DockStation station) {
+    this.station = station;
+    this.windowListener = observable -> invalidate();
+    this.layoutListener = (observable, oldValue, newValue) -> {
+      if (newValue) {
+        invalidate();
+      }
+    };
+  }
+
+  /**
+   * Starts a drag session: takes the snapshot and starts listening for the
+   * changes that make it stale.
+   */
+  public void capture() {
+    release();
+    window = (station.getScene() != null) ? station.getStationWindow() : null;
+    if (window != null) {
+      window.xProperty().addListener(windowListener);
+      window.yProperty().addListener(windowListener);
+      window.widthProperty().addListener(windowListener);
+      window.heightProperty().addListener(windowListener);
+    }
+    station.needsLayoutProperty().addListener(layoutListener);
+    captured = true;
+    refresh();
+  }
+
+  /**
+   * Ends the drag session and drops the snapshot.
+   */
+  public void release() {
+    if (!captured) {
+      return;
+    }
+    if (window != null) {
+      window.xProperty().removeListener(windowListener);
+      window.yProperty().removeListener(windowListener);
+      window.widthProperty().removeListener(windowListener);
+      window.heightProperty().removeListener(windowListener);
+      window = null;
+    }
+    station.needsLayoutProperty().removeListener(layoutListener);
+    captured = false;
+    valid = false;
+    windowBounds = null;
+    targetIndex = null;
+  }
+
+  public boolean isCaptured() {
+    return captured;
+  }
+
+  public void invalidate() {
+    if (valid) {
+      valid = false;
+      generation++;
+    }
+  }
+
+  /**
+   * Get the generation of the snapshot, incremented every time it becomes
+   * stale. Geometry derived from the snapshot compares generations to know
+   * when it must be computed again.
+   *
+   * @return the generation of the snapshot
+   */
+  public int getGeneration() {
+    return generation;
+  }
+
+  private void refresh() {
+    if (valid || !captured) {
+      return;
+    }
+    windowBounds = (window != null)
+        ? new Rectangle2D(window.getX(), window.getY(), window.getWidth(), window.getHeight())
+        : Rectangle2D.EMPTY;
+    targetIndex = DockTargetIndex.build(station.getDockNodes());
+    valid = true;
+  }
+
+  public Rectangle2D getWindowBounds() {
+    refresh();
+    return windowBounds;
+  }
+
+  public DockNode searchTarget(double x, double y) {
+    refresh();
+    return targetIndex.search(x, y);
+  }
+
+  public Bounds getScreenBounds(DockNode node) {
+    refresh();
+    Bounds bounds = targetIndex.getScreenBounds(node);
+    return (bounds != null) ? bounds : node.getScreenBounds();
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015-2016 Alessio Vinerbi. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.anchorage.docks.containers.zones;
+
+import com.anchorage.docks.node.DockNode;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import javafx.geometry.Bounds;
+import javafx.scene.shape.Rectangle;
+
+/**
+ * Docking preview rectangles of every (target, position) pair of a station,
+ * computed when the drag starts and stored in a flat array. Highlighting a
+ * zone is then a table read, without any bounds transform.
+ */
+public final class ZonePreviewTable {
+
+  private static final DockNode.DockPosition[] POSITIONS = DockNode.DockPosition.values();
+  private static final int RECTANGLE_SIZE = 4;
+  private static final int SLOT_SIZE = POSITIONS.length * RECTANGLE_SIZE;
+
+  private final Map<DockNode, Integer> slots;
+  private final double[] rectangles;
+
+  private ZonePreviewTable(int targets) {
+    slots = new IdentityHashMap<>(targets);
+    rectangles = new double[(targets + 1) * SLOT_SIZE];
+  }
+
+  /**
+   * Builds the table of a station.
+   *
+   * @param stationBounds bounds of the station, in overlay coordinates
+   * @param targets candidate target nodes
+   * @param targetBounds bounds of a target, in overlay coordinates, or null
+   * if the target cannot be shown
+   * @return the table
+   */
+  public static ZonePreviewTable build(Bounds stationBounds, List<DockNode> targets,
+      Function<DockNode, Bounds> targetBounds) {
+    ZonePreviewTable table = new ZonePreviewTable(targets.size());
+    table.fill(0, stationBounds);
+    int slot = 1;
+    for (DockNode target : targets) {
+      Bounds bounds = targetBounds.apply(target);
+      if (bounds != null) {
+        table.slots.put(target, slot);
+        table.fill(slot, bounds);
+      }
+      slot++;
+    }
+    return table;
+  }
+
+  private void fill(int slot, Bounds bounds) {
+    for (DockNode.DockPosition position : POSITIONS) {
+      computePreview(bounds, position, rectangles, offsetOf(slot, position));
+    }
+  }
+
+  private static int offsetOf(int slot, DockNode.DockPosition position) {
+    return slot * SLOT_SIZE + position.ordinal() * RECTANGLE_SIZE;
+  }
+
+  /**
+   * Get the number of targets of the table, the station excluded
+   *
+   * @return the number of targets
+   */
+  public int size() {
+    return slots.size();
+  }
+
+  /**
+   * Copies the preview of a zone into the rectangle.
+   *
+   * @param target the target node, or null for the zones of the station
+   * @param position the docking position
+   * @param rectangle the rectangle to update
+   * @return false if the target is not in the table
+   */
+  public boolean applyTo(DockNode target, DockNode.DockPosition position, Rectangle rectangle) {
+    int slot = 0;
+    if (target != null) {
+      Integer targetSlot = slots.get(target);
+      if (targetSlot == null) {
+        return false;
+      }
+      slot = targetSlot;
+    }
+    int offset = offsetOf(slot, position);
+    rectangle.setX(rectangles[offset]);
+    rectangle.setY(rectangles[offset + 1]);
+    rectangle.setWidth(rectangles[offset + 2]);
+    rectangle.setHeight(rectangles[offset + 3]);
+    return true;
+  }
+
+  /**
+   * Computes the area taken by a node docked at the position of a target.
+   *
+   * @param bounds bounds of the target
+   * @param position docking position
+   * @param rectangle destination array, receives x, y, width and height
+   * @param offset index of x in the destination array
+   */
+  public static void computePreview(Bounds bounds, DockNode.DockPosition position,
+      double[] rectangle, int offset) {
+    double x = bounds.getMinX();
+    double y = bounds.getMinY();
+    double width = bounds.getWidth();
+    double height = bounds.getHeight();
+    switch (position) {
+      case LEFT:
+        width /= 2;
+        break;
+      case RIGHT:
+        x += width / 2;
+        width /= 2;
+        break;
+      case TOP:
+        height /= 2;
+        break;
+      case BOTTOM:
+        y += height / 2;
+        height /= 2;
+        break;
+      default:
+        break;
+    }
+    rectangle[offset] = x;
+    rectangle[offset + 1] = y;
+    rectangle[offset + 2] = width;
+    rectangle[offset + 3] = height;
+  }
+}
@@ -25,6 +25,7 @@ import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.Pane;
 import javafx.scene.shape.Circle;
+import javafx.stage.Window;
 
 /**
  *
@@ -41,6 +42,10 @@ public final class ZoneSelector extends Pane {
     private final Pane parent;
     
     private boolean zoneDisabled = false;
+    
+    private Bounds screenBounds;
+    private double screenBoundsWindowX;
+    private double screenBoundsWindowY;
 
     public ZoneSelector(Image image, DockNode.DockPosition position, boolean stationZone, Pane parent, double x, double y)
     { 
@@ -91,6 +96,9 @@ public final class ZoneSelector extends Pane {
         
         parent.getChildren().add(this);
         relocate(x, y); 
+        
+        boundsInParentProperty().addListener(observable -> screenBounds = null);
+        parent.boundsInParentProperty().addListener(observable -> screenBounds = null);
     }
     
     
@@ -105,8 +113,26 @@ public final class ZoneSelector extends Pane {
     
     public boolean overMe(double x, double y)
     {
-        Bounds screenBounds = localToScreen(getBoundsInLocal());
-        return (screenBounds.contains(x, y));
+        Bounds bounds = getScreenBounds();
+        return (bounds != null && bounds.contains(x, y));
+    }
+    
+    /**
+     * Screen bounds of the selector, computed again only when the selector
+     * moves inside its window or the window itself moves.
+     */
+    private Bounds getScreenBounds()
+    {
+        Window window = (getScene() != null) ? getScene().getWindow() : null;
+        if (window == null) {
+            return null;
+        }
+        if (screenBounds == null || screenBoundsWindowX != window.getX() || screenBoundsWindowY != window.getY()) {
+            screenBounds = localToScreen(getBoundsInLocal());
+            screenBoundsWindowX = window.getX();
+            screenBoundsWindowY = window.getY();
+        }
+        return screenBounds;
     }
     
     public DockNode.DockPosition getPosition()
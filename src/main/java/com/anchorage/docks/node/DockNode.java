@@ -27,16 +27,21 @@ import static com.anchorage.docks.containers.common.AnchorageSettings.FLOATING_N
 
 import com.anchorage.docks.containers.NodeDraggingPreview;
 import com.anchorage.docks.containers.StageFloatable;
+import com.anchorage.docks.containers.common.AnchorageSettings;
+import com.anchorage.docks.containers.common.DockSnapshotService;
 import com.anchorage.docks.containers.interfaces.DockContainableComponent;
 import com.anchorage.docks.containers.interfaces.DockContainer;
 import com.anchorage.docks.containers.subcontainers.DockTabberContainer;
 import com.anchorage.docks.node.interfaces.DockNodeCloseRequestHandler;
 import com.anchorage.docks.node.interfaces.DockNodeCreationListener;
 import com.anchorage.docks.node.ui.DockUIPanel;
+import com.anchorage.docks.stations.DockLayoutEvent;
 import com.anchorage.docks.stations.DockStation;
 import com.anchorage.docks.stations.DockSubStation;
 import com.anchorage.system.AnchorageSystem;
 import java.util.Objects;
+import java.util.UUID;
+import javafx.animation.AnimationTimer;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ReadOnlyBooleanProperty;
@@ -59,11 +64,13 @@ import javafx.stage.Window;
 public class DockNode extends StackPane implements DockContainableComponent {
 
   private DockUIPanel content;
+  private String dockId;
   private BooleanProperty floatableProperty;
   private BooleanProperty closeableProperty;
   private BooleanProperty resizableProperty;
   private BooleanProperty maximizableProperty;
   private ObjectProperty<DockStation> station;
+  private ObjectProperty<DragFeedback> dragFeedback;
   private ReadOnlyBooleanWrapper floatingProperty;
   private ReadOnlyBooleanWrapper draggingProperty;
   private ReadOnlyBooleanWrapper maximizingProperty;
@@ -76,9 +83,15 @@ public class DockNode extends StackPane implements DockContainableComponent {
   private DockNodeCloseRequestHandler closeRequestHanlder;
   private Point2D dragWindowOffset;
   private NodeDraggingPreview nodePreview;
+  private AnimationTimer dragPulseTimer;
+  private boolean dragMovePending;
+  private double pendingDragX;
+  private double pendingDragY;
 
   private DockNode() {
+    dockId = UUID.randomUUID().toString();
     station = new SimpleObjectProperty<>(null);
+    dragFeedback = new SimpleObjectProperty<>(null);
     floatableProperty = new SimpleBooleanProperty(true);
     closeableProperty = new SimpleBooleanProperty(true);
     resizableProperty = new SimpleBooleanProperty(true);
@@ -111,13 +124,14 @@ public class DockNode extends StackPane implements DockContainableComponent {
     installDragEventManager(content.getNodeForDraggingManagement());
   }
 
-  private void showDraggedNodePreview(double x, double y) {
+  private void showDraggedNodePreview(double x, double y, double pointerX, double pointerY) {
     if (nodePreview != null) {
       nodePreview.closeStage();
     }
+    DockSnapshotService.release(this);
     nodePreview = new NodeDraggingPreview(this, stationProperty().get().getScene().getWindow(),
         x, y);
-    nodePreview.show();
+    nodePreview.showPreview(x, y, pointerX, pointerY);
   }
 
   public void installNullDragManager(Node n) {
@@ -142,37 +156,71 @@ public class DockNode extends StackPane implements DockContainableComponent {
             moveFloatable(event.getScreenX(), event.getScreenY());
           } else {
             showDraggedNodePreview(event.getScreenX() - dragWindowOffset.getX(),
-                event.getScreenY() - dragWindowOffset.getY());
+                event.getScreenY() - dragWindowOffset.getY(), event.getScreenX(),
+                event.getScreenY());
           }
           if (!maximizingProperty().get()) {
             AnchorageSystem.prepareDraggingZoneFor(stationProperty().get(), this);
           }
+        } else if (AnchorageSettings.isDragEventsCoalescing()) {
+          queueDragMove(event.getScreenX(), event.getScreenY());
         } else {
-          if (floatingProperty().get()) {
-            moveFloatable(event.getScreenX() - dragWindowOffset.getX(),
-                event.getScreenY() - dragWindowOffset.getY());
-          } else {
-            nodePreview.setX(event.getScreenX() - dragWindowOffset.getX());
-            nodePreview.setY(event.getScreenY() - dragWindowOffset.getY());
-          }
-          stationProperty().get().searchTargetNode(event.getScreenX(), event.getScreenY());
-          AnchorageSystem.searchTargetNode(event.getScreenX(), event.getScreenY());
+          moveDragged(event.getScreenX(), event.getScreenY());
         }
       }
     });
     n.setOnMouseReleased(event -> {
       if (event.getButton() == MouseButton.PRIMARY) {
         if (draggingProperty().get() && !maximizingProperty().get()) {
+          flushDragMove();
           if (nodePreview != null) {
             nodePreview.closeStage();
             nodePreview = null;
           }
           AnchorageSystem.finalizeDragging();
+          DockSnapshotService.release(this);
         }
       }
     });
   }
 
+  private void moveDragged(double screenX, double screenY) {
+    if (floatingProperty().get()) {
+      moveFloatable(screenX - dragWindowOffset.getX(), screenY - dragWindowOffset.getY());
+    } else if (nodePreview != null) {
+      nodePreview.move(screenX - dragWindowOffset.getX(), screenY - dragWindowOffset.getY(),
+          screenX, screenY);
+    }
+    AnchorageSystem.searchTargetNode(screenX, screenY);
+  }
+
+  private void queueDragMove(double screenX, double screenY) {
+    pendingDragX = screenX;
+    pendingDragY = screenY;
+    dragMovePending = true;
+    if (dragPulseTimer == null) {
+      dragPulseTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+          if (dragMovePending && draggingProperty().get()) {
+            flushDragMove();
+          } else {
+            dragMovePending = false;
+            stop();
+          }
+        }
+      };
+    }
+    dragPulseTimer.start();
+  }
+
+  private void flushDragMove() {
+    if (dragMovePending) {
+      dragMovePending = false;
+      moveDragged(pendingDragX, pendingDragY);
+    }
+  }
+
   private void callCreationCallBack() {
     if (content.getNodeContent() instanceof DockNodeCreationListener) {
       ((DockNodeCreationListener) content.getNodeContent()).onDockNodeCreated(this);
@@ -210,6 +258,20 @@ public class DockNode extends StackPane implements DockContainableComponent {
     return maximizableProperty;
   }
 
+  /**
+   * Feedback shown while the node is dragged. When null, the default of
+   * {@link AnchorageSettings#getDragFeedback()} is used.
+   *
+   * @return the drag feedback property
+   */
+  public ObjectProperty<DragFeedback> dragFeedbackProperty() {
+    return dragFeedback;
+  }
+
+  public DragFeedback getEffectiveDragFeedback() {
+    return (dragFeedback.get() != null) ? dragFeedback.get() : AnchorageSettings.getDragFeedback();
+  }
+
   public ReadOnlyBooleanProperty floatingProperty() {
     return floatingProperty.getReadOnlyProperty();
   }
@@ -311,6 +373,7 @@ public class DockNode extends StackPane implements DockContainableComponent {
         }
         stageFloatable.makeNodeActiveOnFloatableStage();
         floatingProperty.set(true);
+        fireLayoutChanged(DockLayoutEvent.Type.FLOATED);
       } else {
         closeFloatingStage();
       }
@@ -337,6 +400,17 @@ public class DockNode extends StackPane implements DockContainableComponent {
   }
 
   public void dockAsFloating(Window owner, DockStation station, double x, double y, double width, double height) {
+    dockAsFloating(owner, station, x, y, width, height, true);
+  }
+
+  /**
+   * Docks the node on a floating stage.
+   *
+   * @param show false to create the stage hidden, it is then shown by
+   * {@link #showFloatingStage(double, double)}
+   */
+  public void dockAsFloating(Window owner, DockStation station, double x, double y, double width, double height,
+      boolean show) {
     if (stationProperty().get() != null) {
       ensureVisibility();
       return;
@@ -344,11 +418,20 @@ public class DockNode extends StackPane implements DockContainableComponent {
     station.add(this);
     stageFloatable = new StageFloatable(this, owner, x, y);
     stageFloatable.makeNodeActiveOnFloatableStage();
-    stageFloatable.show();
-    stageFloatable.setWidth(width);
-    stageFloatable.setHeight(height);
+    if (show) {
+      showFloatingStage(width, height);
+    }
     floatingProperty.set(true);
     this.station.set((DockStation) station);
+    fireLayoutChanged(DockLayoutEvent.Type.FLOATED);
+  }
+
+  public void showFloatingStage(double width, double height) {
+    if (stageFloatable != null) {
+      stageFloatable.show();
+      stageFloatable.setWidth(width);
+      stageFloatable.setHeight(height);
+    }
   }
 
   public void dock(DockStation station, DockPosition position) {
@@ -359,6 +442,7 @@ public class DockNode extends StackPane implements DockContainableComponent {
     station.add(this);
     station.putDock(this, position, 0.5);
     this.station.set((DockStation) station);
+    fireDocked(null, position, 0.5);
   }
 
   public void dock(DockStation station, DockPosition position, double percentage) {
@@ -369,6 +453,7 @@ public class DockNode extends StackPane implements DockContainableComponent {
     station.add(this);
     station.putDock(this, position, percentage);
     this.station.set((DockStation) station);
+    fireDocked(null, position, percentage);
   }
 
   public void dock(DockNode nodeTarget, DockPosition position) {
@@ -383,6 +468,7 @@ public class DockNode extends StackPane implements DockContainableComponent {
     nodeTarget.stationProperty().get().add(this);
     nodeTarget.getParentContainer().putDock(this, nodeTarget, position, percentage);
     station.set(nodeTarget.station.get());
+    fireDocked(nodeTarget, position, percentage);
   }
 
   public void dock(DockSubStation subStation, DockPosition position) {
@@ -391,6 +477,7 @@ public class DockNode extends StackPane implements DockContainableComponent {
       return;
     }
     subStation.putDock(this, position, 0.5);
+    fireDocked(null, position, 0.5);
   }
 
   public void dock(DockSubStation subStation, DockPosition position, double percentage) {
@@ -399,12 +486,14 @@ public class DockNode extends StackPane implements DockContainableComponent {
       return;
     }
     subStation.putDock(this, position, percentage);
+    fireDocked(null, position, percentage);
   }
 
   public void undock() {
     if (stationProperty().get() == null) {
       return;
     }
+    DockStation previousStation = station.get();
     boolean isFloating = floatingProperty.get();
     restore();
     if (getParentContainer() != null) {
@@ -415,6 +504,43 @@ public class DockNode extends StackPane implements DockContainableComponent {
       station.get().remove(this);
       station.set(null);
     }
+    if (station.get() == null) {
+      previousStation.fireLayoutChanged(DockLayoutEvent.Type.UNDOCKED, this);
+    }
+  }
+
+  private void fireLayoutChanged(DockLayoutEvent.Type type) {
+    if (station.get() != null) {
+      station.get().fireLayoutChanged(type, this);
+    }
+  }
+
+  private void fireDocked(DockNode target, DockPosition position, double percentage) {
+    if (station.get() != null) {
+      station.get().fireLayoutChanged(new DockLayoutEvent(DockLayoutEvent.Type.DOCKED, station.get(),
+          this, target, position, percentage, null));
+    }
+  }
+
+  /**
+   * Get the identifier of the node saved in layouts. It is random unless set,
+   * and restoring a layout matches the nodes by title when it does not match
+   * the identifiers.
+   *
+   * @return the identifier of the node
+   */
+  public String getDockId() {
+    return dockId;
+  }
+
+  /**
+   * Set the identifier of the node saved in layouts, which must be unique and
+   * the same across sessions for the node to be found when restoring a layout.
+   *
+   * @param dockId the identifier of the node
+   */
+  public void setDockId(String dockId) {
+    this.dockId = Objects.requireNonNull(dockId);
   }
 
   public DockUIPanel getContent() {
@@ -460,8 +586,10 @@ public class DockNode extends StackPane implements DockContainableComponent {
         stageFloatable.setWidth(floatingStateWidth);
         stageFloatable.setHeight(floatingStateHeight);
         maximizingProperty.set(false);
+        fireLayoutChanged(DockLayoutEvent.Type.RESTORED);
       } else if (station.get().restore(this)) {
         maximizingProperty.set(false);
+        fireLayoutChanged(DockLayoutEvent.Type.RESTORED);
       }
     }
   }
@@ -488,8 +616,10 @@ public class DockNode extends StackPane implements DockContainableComponent {
         floatingStateHeight = stageFloatable.getHeight();
         moveStateToFullScreen();
         maximizingProperty.set(true);
+        fireLayoutChanged(DockLayoutEvent.Type.MAXIMIZED);
       } else if (station.get().maximize(this)) {
         maximizingProperty.set(true);
+        fireLayoutChanged(DockLayoutEvent.Type.MAXIMIZED);
       }
     }
   }
@@ -505,4 +635,15 @@ public class DockNode extends StackPane implements DockContainableComponent {
     BOTTOM,
     CENTER
   }
+
+  public enum DragFeedback {
+    /**
+     * A snapshot of the node
+     */
+    SNAPSHOT,
+    /**
+     * An outline of the node with its title bar, it does not render the content
+     */
+    OUTLINE
+  }
 }
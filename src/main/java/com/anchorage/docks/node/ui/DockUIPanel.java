@@ -39,6 +39,9 @@ import javafx.scene.layout.StackPane;
 public final class DockUIPanel extends Pane {
 
   public static final double BAR_HEIGHT = 25;
+  // position of the title in the bar, after the icon
+  public static final double TITLE_X = 25;
+  public static final double TITLE_Y = 5;
 
   private Node nodeContent;
   private Label titleLabel;
@@ -196,7 +199,7 @@ public final class DockUIPanel extends Pane {
     iconView.relocate(5, (BAR_HEIGHT - iconView.getLayoutBounds().getHeight()) / 2 + 1);
     titleLabel.getStyleClass().add(titleTextStyle);
     barPanel.getChildren().addAll(iconView, titleLabel);
-    titleLabel.relocate(25, 5);
+    titleLabel.relocate(TITLE_X, TITLE_Y);
     contentPanel = new StackPane();
     contentPanel.getStyleClass().add("docknode-content-panel");
     contentPanel.relocate(0, BAR_HEIGHT);
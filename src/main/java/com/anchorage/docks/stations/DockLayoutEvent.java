@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015-2016 Alessio Vinerbi. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.anchorage.docks.stations;
+
+import com.anchorage.docks.containers.interfaces.DockContainer;
+import com.anchorage.docks.node.DockNode;
+
+/**
+ * Change of the layout of a station, delivered to the
+ * {@link com.anchorage.docks.stations.interfaces.DockLayoutListener}s of the
+ * station and of the stations containing it.
+ */
+public final class DockLayoutEvent {
+
+  public enum Type {
+    DOCKED,
+    UNDOCKED,
+    FLOATED,
+    MAXIMIZED,
+    RESTORED,
+    /**
+     * The user has dragged a divider, reported once the drag is over
+     */
+    DIVIDER_MOVED,
+    /**
+     * Another tab has been selected, the selected tabs are not part of saved
+     * layouts
+     */
+    TAB_SELECTED,
+    /**
+     * The containers have been rearranged in a way that none of the other types
+     * describes
+     */
+    REARRANGED,
+    /**
+     * The containers have been normalized: nested splitters merged and
+     * containers holding a single item replaced by it, the docks keep their
+     * places
+     */
+    NORMALIZED
+  }
+
+  private final Type type;
+  private final DockStation station;
+  private final DockNode node;
+  private final DockNode target;
+  private final DockNode.DockPosition position;
+  private final double percentage;
+  private final DockContainer container;
+
+  public DockLayoutEvent(Type type, DockStation station, DockNode node) {
+    this(type, station, node, null, null, 0, null);
+  }
+
+  public DockLayoutEvent(Type type, DockStation station, DockNode node, DockNode target,
+      DockNode.DockPosition position, double percentage, DockContainer container) {
+    this.type = type;
+    this.station = station;
+    this.node = node;
+    this.target = target;
+    this.position = position;
+    this.percentage = percentage;
+    this.container = container;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Get the station where the change happened, which is a substation when the
+   * event is forwarded to the station containing it.
+   *
+   * @return the station where the change happened
+   */
+  public DockStation getStation() {
+    return station;
+  }
+
+  /**
+   * Get the node affected by the change, null for divider moves
+   *
+   * @return the node affected by the change
+   */
+  public DockNode getNode() {
+    return node;
+  }
+
+  /**
+   * Get the node next to which the node has been docked, null when it has been
+   * docked on the station
+   *
+   * @return the target of a dock
+   */
+  public DockNode getTarget() {
+    return target;
+  }
+
+  /**
+   * Get the position of a dock, null for the other changes
+   *
+   * @return the position of a dock
+   */
+  public DockNode.DockPosition getPosition() {
+    return position;
+  }
+
+  public double getPercentage() {
+    return percentage;
+  }
+
+  /**
+   * Get the container whose dividers moved or whose tab has been selected
+   *
+   * @return the container that changed, or null
+   */
+  public DockContainer getContainer() {
+    return container;
+  }
+
+  @Override
+  public String toString() {
+    return type + " " + node;
+  }
+}
@@ -19,13 +19,20 @@
 package com.anchorage.docks.stations;
 
 import com.anchorage.docks.containers.SingleDockContainer;
+import com.anchorage.docks.containers.common.AnchorageSettings;
 import com.anchorage.docks.containers.subcontainers.DockTabberContainer;
 import com.anchorage.docks.containers.zones.DockZones;
+import com.anchorage.docks.containers.zones.DragGeometryCache;
 import com.anchorage.docks.containers.zones.ZoneSelector;
 import com.anchorage.docks.node.DockNode;
+import com.anchorage.docks.stations.interfaces.DockLayoutListener;
+import com.anchorage.system.AnchorageLayout;
+import com.anchorage.system.LayoutTransaction;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -40,6 +47,7 @@ public final class DockStation extends SingleDockContainer {
 
   private final List<DockNode> nodes;
   private DockZones dockZones;
+  private final DragGeometryCache dragGeometry;
   private DockNode currentNodeTarget;
   private Node currentNodeBeforeMaximization;
   private DockNode currentNodeMaximized;
@@ -48,11 +56,42 @@ public final class DockStation extends SingleDockContainer {
   private DockSubStation dockNodeForSubstation;
   private boolean commonStation;
   private boolean selected = false;
+  private final List<DockLayoutListener> layoutListeners;
+  private boolean normalizationScheduled;
+
+  private final ChangeListener<Boolean> showingListener = (observable, wasShowing, showing) -> {
+    if (showing) {
+      schedulePrewarmZones();
+    }
+  };
+  private final ChangeListener<Window> windowListener = (observable, oldWindow, newWindow) -> {
+    if (oldWindow != null) {
+      oldWindow.showingProperty().removeListener(showingListener);
+    }
+    if (newWindow != null) {
+      newWindow.showingProperty().addListener(showingListener);
+      if (newWindow.isShowing()) {
+        schedulePrewarmZones();
+      }
+    }
+  };
 
   public DockStation() {
     nodes = new ArrayList<>();
+    layoutListeners = new ArrayList<>();
+    dragGeometry = new DragGeometryCache(this);
     substation = false;
     buildUI();
+    sceneProperty().addListener((observable, oldScene, newScene) -> {
+      if (oldScene != null) {
+        oldScene.windowProperty().removeListener(windowListener);
+        windowListener.changed(oldScene.windowProperty(), oldScene.getWindow(), null);
+      }
+      if (newScene != null) {
+        newScene.windowProperty().addListener(windowListener);
+        windowListener.changed(newScene.windowProperty(), null, newScene.getWindow());
+      }
+    });
   }
 
   public DockStation(boolean commonStation) {
@@ -87,6 +126,9 @@ public final class DockStation extends SingleDockContainer {
 
   public boolean isInnerPosition(double x, double y) {
 
+    if (dragGeometry.isCaptured()) {
+      return dragGeometry.getWindowBounds().contains(x, y);
+    }
     Window window = getStationWindow();
     Rectangle bounds = new Rectangle(window.getX(), window.getY(), window.getWidth(),
         window.getHeight());
@@ -95,13 +137,58 @@ public final class DockStation extends SingleDockContainer {
 
   public void prepareZones(DockNode nodeToMove) {
 
-    if (currentNodeMaximized == null) {
-      dockZones = new DockZones(this, nodeToMove);
+    prewarmZones();
+    if (currentNodeMaximized == null && dockZones != null) {
+      dockZones.prepare(nodeToMove);
       dockZones.showZones();
     }
 
   }
 
+  private void schedulePrewarmZones() {
+    // after the window has been shown, not while it is showing
+    Platform.runLater(() -> {
+      if (getScene() != null && getStationWindow() != null && getStationWindow().isShowing()) {
+        prewarmZones();
+      }
+    });
+  }
+
+  /**
+   * Creates the zones overlay of the station ahead of the first drag. The
+   * station calls it itself once its window is showing, and again before every
+   * drag. The overlay is kept and reused by every following drag, it is
+   * created again only when the station moves to another window or the
+   * overlay mode changes.
+   */
+  public void prewarmZones() {
+    if (getScene() == null || getStationWindow() == null) {
+      return;
+    }
+    if (dockZones == null || dockZones.getOwner() != getStationWindow()
+        || dockZones.isSingleWindow() != AnchorageSettings.isSingleWindowZones()) {
+      if (dockZones != null) {
+        dockZones.hideZones();
+      }
+      dockZones = new DockZones(this);
+    }
+  }
+
+  /**
+   * Captures the screen geometry of this station for the current drag session.
+   */
+  public void captureDragGeometry() {
+    dragGeometry.capture();
+  }
+
+  public void releaseDragGeometry() {
+    dragGeometry.release();
+  }
+
+  public DragGeometryCache getDragGeometry() {
+    return dragGeometry;
+  }
+
   public boolean isSubStation() {
     return substation;
   }
@@ -125,14 +212,16 @@ public final class DockStation extends SingleDockContainer {
 
   public void searchTargetNode(double x, double y) {
     selected = false;
-    if (currentNodeMaximized != null) {
+    if (currentNodeMaximized != null || dockZones == null) {
       return;
     }
-    Optional<DockNode> nodeTarget = nodes.stream()
-        .filter(node
-            -> !node.floatingProperty().get()
-            && node.checkForTarget(x, y)
-            && node.isDockVisible()).findFirst();
+    Optional<DockNode> nodeTarget = (dragGeometry.isCaptured())
+        ? Optional.ofNullable(dragGeometry.searchTarget(x, y))
+        : nodes.stream()
+            .filter(node
+                -> !node.floatingProperty().get()
+                && node.checkForTarget(x, y)
+                && node.isDockVisible()).findFirst();
     nodeTarget.map(node -> (Runnable) () -> {
       currentNodeTarget = node;
       dockZones.moveAt(node);
@@ -146,6 +235,18 @@ public final class DockStation extends SingleDockContainer {
     }
   }
 
+  /**
+   * Forgets the drop target found by the last search, used when the pointer
+   * moves to another station during a drag.
+   */
+  public void clearDragTarget() {
+    selected = false;
+    currentNodeTarget = null;
+    if (dockZones != null) {
+      dockZones.hideCircleZones();
+    }
+  }
+
   public void addOverlay(Node node) {
     getChildren().add(node);
   }
@@ -155,7 +256,9 @@ public final class DockStation extends SingleDockContainer {
   }
 
   public void hideZones() {
-    dockZones.close();
+    if (dockZones != null) {
+      dockZones.hideZones();
+    }
   }
 
   private void manageDragOnSameNode() {
@@ -166,7 +269,7 @@ public final class DockStation extends SingleDockContainer {
   }
 
   public void finalizeDrag() {
-    if (currentNodeMaximized != null) {
+    if (currentNodeMaximized != null || dockZones == null) {
       return;
     }
     ZoneSelector selector = dockZones.getCurrentZoneSelector();
@@ -186,7 +289,7 @@ public final class DockStation extends SingleDockContainer {
   }
 
   public void closeZones() {
-    dockZones.close();
+    hideZones();
   }
 
   private void manageDockDestination() {
@@ -216,6 +319,16 @@ public final class DockStation extends SingleDockContainer {
     return false;
   }
 
+  /**
+   * Get the node the station showed before a dock was maximized, which holds
+   * the layout of the station while the maximized dock replaces it.
+   *
+   * @return the node, or null if no dock is maximized
+   */
+  public Node getNodeBeforeMaximization() {
+    return currentNodeBeforeMaximization;
+  }
+
   public boolean restore(DockNode node) {
     if (currentNodeMaximized != null && currentNodeMaximized == node) {
       Pane panelParent = (Pane) currentNodeMaximizedParent;
@@ -229,6 +342,69 @@ public final class DockStation extends SingleDockContainer {
     }
   }
 
+  /**
+   * Starts a batch of docking operations on this station, applied at once when
+   * the transaction is committed.
+   *
+   * @return the transaction
+   */
+  public LayoutTransaction beginTransaction() {
+    return new LayoutTransaction(this);
+  }
+
+  /**
+   * Adds a listener notified of the changes of the layout of this station and
+   * of its substations.
+   *
+   * @param listener the listener
+   */
+  public void addLayoutListener(DockLayoutListener listener) {
+    layoutListeners.add(listener);
+  }
+
+  public void removeLayoutListener(DockLayoutListener listener) {
+    layoutListeners.remove(listener);
+  }
+
+  public void fireLayoutChanged(DockLayoutEvent.Type type, DockNode node) {
+    fireLayoutChanged(new DockLayoutEvent(type, this, node));
+  }
+
+  public void fireLayoutChanged(DockLayoutEvent event) {
+    if (!layoutListeners.isEmpty()) {
+      for (DockLayoutListener listener : new ArrayList<>(layoutListeners)) {
+        listener.layoutChanged(event);
+      }
+    }
+    if (substation && dockNodeForSubstation.stationProperty().get() != null) {
+      dockNodeForSubstation.stationProperty().get().fireLayoutChanged(event);
+    }
+    if (!substation && isStructuralChange(event.getType())) {
+      scheduleNormalization();
+    }
+  }
+
+  private static boolean isStructuralChange(DockLayoutEvent.Type type) {
+    return type == DockLayoutEvent.Type.DOCKED || type == DockLayoutEvent.Type.UNDOCKED
+        || type == DockLayoutEvent.Type.FLOATED || type == DockLayoutEvent.Type.REARRANGED;
+  }
+
+  /**
+   * Normalizes the layout once the current changes are over, so that a batch
+   * of changes is normalized once.
+   */
+  private void scheduleNormalization() {
+    if (AnchorageSettings.isLayoutNormalization() && !normalizationScheduled) {
+      normalizationScheduled = true;
+      Platform.runLater(() -> {
+        normalizationScheduled = false;
+        if (AnchorageSettings.isLayoutNormalization()) {
+          AnchorageLayout.normalizeLayout(this);
+        }
+      });
+    }
+  }
+
   public void markAsSubStation(DockSubStation dockNodeForSubstation) {
     substation = true;
     this.dockNodeForSubstation = dockNodeForSubstation;
@@ -2,9 +2,14 @@ package com.anchorage.system;
 
 import static com.anchorage.docks.containers.common.AnchorageSettings.FLOATING_NODE_DROPSHADOW_RADIUS;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -20,20 +25,21 @@ import org.w3c.dom.NodeList;
 
 import com.anchorage.docks.containers.StageFloatable;
 import com.anchorage.docks.containers.common.DockCommons;
+import com.anchorage.docks.containers.interfaces.DockContainableComponent;
 import com.anchorage.docks.containers.interfaces.DockContainer;
 import com.anchorage.docks.containers.subcontainers.DockSplitterContainer;
 import com.anchorage.docks.containers.subcontainers.DockTabberContainer;
 import com.anchorage.docks.node.DockNode;
 import com.anchorage.docks.node.ui.DockUIPanel;
+import com.anchorage.docks.stations.DockLayoutEvent;
 import com.anchorage.docks.stations.DockStation;
 import com.anchorage.docks.stations.DockSubStation;
-import com.sun.javafx.robot.impl.FXRobotHelper;
 
+import javafx.application.Platform;
 import javafx.geometry.Orientation;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.control.Tab;
-import javafx.stage.Stage;
 
 /**
  * @author Markus Traber
@@ -93,6 +99,28 @@ public class AnchorageLayout {
 		return true;
 	}
 
+	/**
+	 * Saves layout of the DockStation without blocking the JavaFX thread. The
+	 * layout is copied right away, then written in the background to a
+	 * temporary file that replaces the destination file once complete. When
+	 * saves of the same file pile up, only the latest layout is written. <br/>
+	 * Must be called on the JavaFX thread.
+	 * 
+	 * @param rootDockStation Root dock station
+	 * @param filePath file path where to save layout.
+	 * @return completed with true once the layout has been saved, or with false
+	 *         if saving layout failed
+	 */
+	public static CompletableFuture<Boolean> saveLayoutAsync(final DockStation rootDockStation, final String filePath) {
+		if (!Platform.isFxApplicationThread()) {
+			throw new IllegalStateException("Layout must be saved on the JavaFX application thread");
+		}
+		if (rootDockStation.getChildren().isEmpty()) {
+			return CompletableFuture.completedFuture(false);
+		}
+		return LayoutSaveQueue.enqueue(LayoutModel.capture(rootDockStation), Paths.get(filePath));
+	}
+
 	private static void parseStationTree(final Parent parent, final Document doc, final Element element) {
 		if (!parent.getChildrenUnmodifiable().isEmpty()) {
 			for (Node child : parent.getChildrenUnmodifiable()) {
@@ -110,13 +138,14 @@ public class AnchorageLayout {
 					switch (elementName) {
 					case "DockSplitterContainer":
 						DockSplitterContainer container = (DockSplitterContainer) child;
-						String dividerpositions = Double.toString(container.getDividerPositions()[0]);
+						String dividerpositions = StaxLayoutCodec.formatDividerPositions(container.getDividerPositions());
 						childElement.setAttribute("dividerPositions", dividerpositions);
 						childElement.setAttribute("orientation", container.getOrientation().toString());
 						break;
 					case "DockNode":
 					case "DockSubStation":
 						DockUIPanel dockUIPanel = ((DockNode) child).getContent();
+						childElement.setAttribute("id", ((DockNode) child).getDockId());
 						childElement.setAttribute("name", dockUIPanel.titleProperty().get());
 						break;
 					default:
@@ -139,29 +168,87 @@ public class AnchorageLayout {
 		}
 	}
 	
+	/**
+	 * Streams the layout of the station to the visitor: the docked tree, then
+	 * the floating nodes. Tabs are visited in the order in which
+	 * {@link #saveLayout(DockStation, String)} writes them.
+	 * 
+	 * @param rootDockStation Root dock station
+	 * @param visitor receiver of the layout
+	 */
+	static void visitLayout(final DockStation rootDockStation, final LayoutVisitor visitor) {
+		visitStation(rootDockStation, visitor);
+		for (StageFloatable stageFloatable : AnchorageSystem.getFloatingStages()) {
+			visitor.floatingNode(stageFloatable.getDockNode().getDockId(),
+					stageFloatable.getDockNode().getContent().titleProperty().get(),
+					stageFloatable.getX() + FLOATING_NODE_DROPSHADOW_RADIUS,
+					stageFloatable.getY() + FLOATING_NODE_DROPSHADOW_RADIUS,
+					stageFloatable.getScene().getWidth(),
+					stageFloatable.getScene().getHeight());
+		}
+	}
+
+	private static void visitStation(final DockStation station, final LayoutVisitor visitor) {
+		// a maximized dock takes the place of the layout, which is kept aside until it is restored
+		Node beforeMaximization = station.getNodeBeforeMaximization();
+		if (beforeMaximization != null) {
+			visitNode(beforeMaximization, visitor);
+			return;
+		}
+		for (Node child : station.getChildren()) {
+			visitNode(child, visitor);
+		}
+	}
+
+	private static void visitNode(final Node node, final LayoutVisitor visitor) {
+		if (node instanceof DockSplitterContainer) {
+			DockSplitterContainer splitter = (DockSplitterContainer) node;
+			visitor.startSplitter(splitter.getOrientation(), splitter.getDividerPositions());
+			for (Node item : splitter.getItems()) {
+				visitNode(item, visitor);
+			}
+			visitor.end();
+		} else if (node instanceof DockTabberContainer) {
+			// the DOM writer follows the tab pane skin, which holds the tab contents in reverse order
+			List<Tab> tabs = ((DockTabberContainer) node).getTabs();
+			visitor.startTabber();
+			for (int i = tabs.size() - 1; i >= 0; i--) {
+				visitNode(tabs.get(i).getContent(), visitor);
+			}
+			visitor.end();
+		} else if (node instanceof DockSubStation) {
+			DockSubStation subStation = (DockSubStation) node;
+			visitor.startSubStation(subStation.getDockId(), subStation.getContent().titleProperty().get());
+			visitStation(subStation.getSubStation(), visitor);
+			visitor.end();
+		} else if (node instanceof DockNode) {
+			DockUIPanel dockUIPanel = ((DockNode) node).getContent();
+			String contentType = dockUIPanel.getNodeContent().getClass().getSimpleName().trim();
+			visitor.dockNode(((DockNode) node).getDockId(), dockUIPanel.titleProperty().get(),
+					contentType.isEmpty() ? null : contentType);
+		}
+	}
+
 	private static void parseFloatingNodes(Document doc, Element mainRootElement) {
 		Element floatingElement = doc.createElement("floating");
 		mainRootElement.appendChild(floatingElement);
-		for (Stage stage : FXRobotHelper.getStages()) {
-			if (stage instanceof StageFloatable) {
-				StageFloatable stageFloatable = (StageFloatable) stage;
-				
-				// create child element
-				final String elementName = stageFloatable.getDockNode().getClass().getSimpleName().trim().replaceAll("/[^A-Za-z]/", "");
-				Element childElement = doc.createElement(elementName);
-				
-				// name
-				DockUIPanel dockUIPanel = stageFloatable.getDockNode().getContent();
-				childElement.setAttribute("name", dockUIPanel.titleProperty().get());
-				
-				// position and size
-				childElement.setAttribute("position-x", Double.toString(stageFloatable.getX() + FLOATING_NODE_DROPSHADOW_RADIUS));
-				childElement.setAttribute("position-y", Double.toString(stageFloatable.getY() + FLOATING_NODE_DROPSHADOW_RADIUS));
-				childElement.setAttribute("width", Double.toString(stageFloatable.getScene().getWidth()));
-				childElement.setAttribute("height", Double.toString(stageFloatable.getScene().getHeight()));
-
-				floatingElement.appendChild(childElement);
-			}
+		for (StageFloatable stageFloatable : AnchorageSystem.getFloatingStages()) {
+			// create child element
+			final String elementName = stageFloatable.getDockNode().getClass().getSimpleName().trim().replaceAll("/[^A-Za-z]/", "");
+			Element childElement = doc.createElement(elementName);
+			
+			// name
+			DockUIPanel dockUIPanel = stageFloatable.getDockNode().getContent();
+			childElement.setAttribute("id", stageFloatable.getDockNode().getDockId());
+			childElement.setAttribute("name", dockUIPanel.titleProperty().get());
+			
+			// position and size
+			childElement.setAttribute("position-x", Double.toString(stageFloatable.getX() + FLOATING_NODE_DROPSHADOW_RADIUS));
+			childElement.setAttribute("position-y", Double.toString(stageFloatable.getY() + FLOATING_NODE_DROPSHADOW_RADIUS));
+			childElement.setAttribute("width", Double.toString(stageFloatable.getScene().getWidth()));
+			childElement.setAttribute("height", Double.toString(stageFloatable.getScene().getHeight()));
+			
+			floatingElement.appendChild(childElement);
 		}
 	}
 
@@ -177,41 +264,187 @@ public class AnchorageLayout {
 	 * @return boolean if restoring layout has been successful.
 	 */
 	public static boolean restoreLayout(final DockStation dockStation, final String filePath) {
+		return restoreLayout(dockStation, filePath, null);
+	}
+
+	/**
+	 * Restores layout of already docked nodes, recording the time spent in each
+	 * phase of the restore. The detach phase includes parsing the file.
+	 * 
+	 * @param dockStation DockStation with all docked nodes.
+	 * @param filePath Path to file, where layout is saved.
+	 * @param timing receiver of the timings, may be null
+	 * @return boolean if restoring layout has been successful.
+	 */
+	public static boolean restoreLayout(final DockStation dockStation, final String filePath,
+			final LayoutRestoreTiming timing) {
 		try {
+			if (timing != null) {
+				timing.start(dockStation);
+			}
 			File inputFile = new File(filePath);
 			DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
 			DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
 			Document doc = dBuilder.parse(inputFile);
 			
 			// Get all already docked DockNodes and remove all already docked nodes
-			final List<DockNode> dockNodeList = getAndUndockAllDocks(dockStation.getDockNodes());
+			final DockNodeIndex dockNodeIndex = new DockNodeIndex(getAndUndockAllDocks(dockStation.getDockNodes()));
+			if (timing != null) {
+				timing.detached();
+			}
 			
 			List<org.w3c.dom.Node> firstChild = removeTextNodes(doc.getDocumentElement().getChildNodes());
 			if (firstChild.isEmpty()) {
+				if (timing != null) {
+					timing.cancel();
+				}
 				return false; // no child elements
 			}
 			
 			org.w3c.dom.Node startNode = firstChild.get(0);
 			
-			Node outerMostNode = handleNode(startNode, dockNodeList, dockStation);
+			Node outerMostNode = handleNode(startNode, dockNodeIndex, dockStation);
+			if (timing != null) {
+				timing.built();
+			}
 			dockStation.getChildren().add(outerMostNode);
 			
+			// Set parent containers (important for docking to function)
+			setAllParentContainers(dockStation);
+			if (timing != null) {
+				timing.attached();
+			}
+			
 			// floating nodes
+			int floatingStages = 0;
 			if (firstChild.size() > 1) {
 				org.w3c.dom.Node floating = firstChild.get(1);
-				handleFloatingNodes(floating, dockNodeList, dockStation);
+				floatingStages = handleFloatingNodes(floating, dockNodeIndex, dockStation);
+			}
+			if (timing != null) {
+				timing.floatingShown(floatingStages);
+				timing.countPulses();
 			}
 			
-			// Set parent containers (important for docking to function)
-			setAllParentContainers(dockStation);
+			dockStation.fireLayoutChanged(DockLayoutEvent.Type.REARRANGED, null);
 		} catch (Exception e) {
 			e.printStackTrace();
+			if (timing != null) {
+				timing.cancel();
+			}
 			return false;
 		}
 		return true;
 	}
 
-    private static List<DockNode> getAndUndockAllDocks(final List<DockNode> dockNodeList) {
+	/**
+	 * Restores layout of already docked nodes by changing only what differs
+	 * from the current layout. Splitters and tab panes holding the same docks
+	 * as in the saved layout are kept, and docks are moved without being
+	 * undocked, so switching between similar layouts touches only what changed.
+	 * 
+	 * @param dockStation DockStation with all docked nodes.
+	 * @param filePath Path to file, where layout is saved.
+	 * @return boolean if restoring layout has been successful.
+	 */
+	public static boolean reconcileLayout(final DockStation dockStation, final String filePath) {
+		try (InputStream input = new BufferedInputStream(new FileInputStream(filePath))) {
+			LayoutModel model = StaxLayoutCodec.readModel(input);
+			return new LayoutReconciler(dockStation).reconcile(LayoutElement.of(model.getRoot()),
+					LayoutElement.floatingOf(model));
+		} catch (Exception e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Flattens the container tree of the station: splitters nested in a
+	 * splitter of the same orientation are merged into it, keeping the size of
+	 * every dock, and splitters or tab panes holding a single item are replaced
+	 * by the item. It runs after every change of the structure of a station
+	 * unless {@link com.anchorage.docks.containers.common.AnchorageSettings#setLayoutNormalization(boolean)}
+	 * disables it.
+	 * 
+	 * @param dockStation Root dock station
+	 * @return the number of containers removed
+	 */
+	public static int normalizeLayout(final DockStation dockStation) {
+		return new LayoutNormalizer(dockStation).normalize();
+	}
+
+	/**
+	 * Takes the docked tree out of the station with a single change of the
+	 * scene, then unregisters its nodes and empties its containers, which are
+	 * detached from the scene at that point and can be changed cheaply.
+	 * 
+	 * @param dockStation DockStation with all docked nodes.
+	 * @return all the nodes of the station and of its substations
+	 */
+	static List<DockNode> detachAllDocks(final DockStation dockStation) {
+		for (DockNode dockNode : new ArrayList<>(dockStation.getDockNodes())) {
+			if (dockNode.maximizingProperty().get()) {
+				dockNode.restoreLayout();
+			}
+		}
+		Node root = null;
+		for (Node child : dockStation.getChildren()) {
+			if (child instanceof DockContainableComponent) {
+				root = child;
+				break;
+			}
+		}
+		if (root != null) {
+			dockStation.getChildren().remove(root);
+		}
+
+		final List<DockNode> returnList = new ArrayList<>();
+		unregisterAllDocks(dockStation, returnList);
+		clearContainers(root);
+		return returnList;
+	}
+
+	private static void unregisterAllDocks(final DockStation dockStation, final List<DockNode> returnList) {
+		for (DockNode dockNode : new ArrayList<>(dockStation.getDockNodes())) {
+			returnList.add(dockNode);
+			if (dockNode instanceof DockSubStation) {
+				unregisterAllDocks(((DockSubStation) dockNode).getSubStation(), returnList);
+			}
+			if (dockNode.floatingProperty().get()) {
+				dockNode.undock();
+			} else {
+				dockNode.setParentContainer(null);
+				dockStation.remove(dockNode);
+			}
+		}
+	}
+
+	private static void clearContainers(final Node node) {
+		// cut the container from the station first, so it fires no layout events
+		if (node instanceof DockContainableComponent && !(node instanceof DockNode)) {
+			((DockContainableComponent) node).setParentContainer(null);
+		}
+		if (node instanceof DockSplitterContainer) {
+			List<Node> items = new ArrayList<>(((DockSplitterContainer) node).getItems());
+			((DockSplitterContainer) node).getItems().clear();
+			items.forEach(AnchorageLayout::clearContainers);
+		} else if (node instanceof DockTabberContainer) {
+			List<Tab> tabs = new ArrayList<>(((DockTabberContainer) node).getTabs());
+			((DockTabberContainer) node).getTabs().clear();
+			for (Tab tab : tabs) {
+				Node content = tab.getContent();
+				tab.setContent(null);
+				clearContainers(content);
+			}
+		} else if (node instanceof DockSubStation) {
+			DockStation subStation = ((DockSubStation) node).getSubStation();
+			List<Node> children = new ArrayList<>(subStation.getChildren());
+			subStation.getChildren().clear();
+			children.forEach(AnchorageLayout::clearContainers);
+		}
+	}
+
+    static List<DockNode> getAndUndockAllDocks(final List<DockNode> dockNodeList) {
         final List<DockNode> list = new ArrayList<>(dockNodeList);
         final List<DockNode> returnList = new ArrayList<>(dockNodeList);
         
@@ -226,7 +459,7 @@ public class AnchorageLayout {
         return returnList;
     }
 	
-	private static void setAllParentContainers(Node node) {
+	static void setAllParentContainers(Node node) {
 	    if (node instanceof DockContainer) {
 	        DockContainer dockContainer = (DockContainer) node;
 	        
@@ -275,7 +508,8 @@ public class AnchorageLayout {
 	    	return returnList;
     }
 	
-	private static void handleFloatingNodes(final org.w3c.dom.Node floating, final List<DockNode> dockNodeList, final DockStation dockStation) {
+	private static int handleFloatingNodes(final org.w3c.dom.Node floating, final DockNodeIndex dockNodeIndex, final DockStation dockStation) {
+		int floatingStages = 0;
 		List<org.w3c.dom.Node> floatingList = removeTextNodes(floating.getChildNodes());
 		for (org.w3c.dom.Node node : floatingList) {	
 			final double posX = Double.parseDouble(node.getAttributes().getNamedItem("position-x").getNodeValue());
@@ -283,34 +517,40 @@ public class AnchorageLayout {
 			final double width = Double.parseDouble(node.getAttributes().getNamedItem("width").getNodeValue());
 			final double height = Double.parseDouble(node.getAttributes().getNamedItem("height").getNodeValue());
 			
-			for (DockNode dockNode : dockNodeList) {
-		        	if (node.getAttributes().getNamedItem("name") != null && dockNode.getContent().titleProperty().getValue().equals(node.getAttributes().getNamedItem("name").getNodeValue())) {
-		        		dockNode.dockAsFloating(dockStation.getStationWindow(), dockStation, posX, posY, width, height);
-		        	} 
-	        }
+			if (node.getAttributes().getNamedItem("name") != null) {
+				DockNode dockNode = dockNodeIndex.take(getAttribute(node, "id"), getAttribute(node, "name"));
+				if (dockNode != null) {
+					dockNode.dockAsFloating(dockStation.getStationWindow(), dockStation, posX, posY, width, height);
+					floatingStages++;
+				}
+			}
 		}
+		return floatingStages;
 	}
 
-    private static Node handleNode(final org.w3c.dom.Node node, final List<DockNode> dockNodeList, final DockStation dockStation) {
+    private static Node handleNode(final org.w3c.dom.Node node, final DockNodeIndex dockNodeIndex, final DockStation dockStation) {
 		switch (node.getNodeName()) {
 		case "DockSplitterContainer":
-			return handleDockSplitterContainer(node, dockNodeList, dockStation);
+			return handleDockSplitterContainer(node, dockNodeIndex, dockStation);
 		case "DockTabberContainer":
-			return handleDockTabberContainer(node, dockNodeList, dockStation);
+			return handleDockTabberContainer(node, dockNodeIndex, dockStation);
 		case "DockSubStation":
-			return handleDockSubStation(node, dockNodeList, dockStation);
+			return handleDockSubStation(node, dockNodeIndex, dockStation);
 		case "DockNode": 
-		    return handleDockNode(node, dockNodeList, dockStation);
+		    return handleDockNode(node, dockNodeIndex, dockStation);
 		default:
 			break;
 		}
 		return null;
 	}
 
-    private static Node handleDockSubStation(final org.w3c.dom.Node node, final List<DockNode> dockNodeList, final DockStation dockStation) {
+    private static Node handleDockSubStation(final org.w3c.dom.Node node, final DockNodeIndex dockNodeIndex, final DockStation dockStation) {
         final List<org.w3c.dom.Node> childNodes = removeTextNodes(node.getChildNodes());
         final String name = node.getAttributes().getNamedItem("name").getNodeValue();
         DockSubStation subStation = AnchorageSystem.createSubStation(dockStation, name);
+        if (getAttribute(node, "id") != null) {
+            subStation.setDockId(getAttribute(node, "id"));
+        }
         subStation.stationProperty().set(dockStation);
         dockStation.add(subStation);
         
@@ -319,24 +559,30 @@ public class AnchorageLayout {
         }
         
         // A SubStation can only contain one following child element
-        subStation.getSubStation().getChildren().add(handleNode(childNodes.get(0), dockNodeList, subStation.getSubStation()));
+        subStation.getSubStation().getChildren().add(handleNode(childNodes.get(0), dockNodeIndex, subStation.getSubStation()));
         
         return subStation;
     }
 
-    private static Node handleDockNode(final org.w3c.dom.Node node, final List<DockNode> dockNodeList, final DockStation dockStation) {
-        for (DockNode dockNode : dockNodeList) {
-	        	if (node.getAttributes().getNamedItem("name") != null && dockNode.getContent().titleProperty().getValue().equals(node.getAttributes().getNamedItem("name").getNodeValue())) {
-	        		dockStation.add(dockNode);
-	        		dockNode.stationProperty().set(dockStation);
-	        	    return dockNode;
-	        	} 
+    private static Node handleDockNode(final org.w3c.dom.Node node, final DockNodeIndex dockNodeIndex, final DockStation dockStation) {
+        if (node.getAttributes().getNamedItem("name") == null) {
+            return null;
         }
-        return null;
+        DockNode dockNode = dockNodeIndex.take(getAttribute(node, "id"), getAttribute(node, "name"));
+        if (dockNode != null) {
+            dockStation.add(dockNode);
+            dockNode.stationProperty().set(dockStation);
+        }
+        return dockNode;
+    }
+
+    private static String getAttribute(final org.w3c.dom.Node node, final String name) {
+        org.w3c.dom.Node attribute = node.getAttributes().getNamedItem(name);
+        return (attribute != null) ? attribute.getNodeValue() : null;
     }
 	
-	private static Node handleDockSplitterContainer(final org.w3c.dom.Node node, final List<DockNode> dockNodeList, final DockStation dockStation) {
-		final double dividerPosition = Double.parseDouble(node.getAttributes().getNamedItem("dividerPositions").getNodeValue());
+	private static Node handleDockSplitterContainer(final org.w3c.dom.Node node, final DockNodeIndex dockNodeIndex, final DockStation dockStation) {
+		final double[] dividerPositions = StaxLayoutCodec.parseDividerPositions(getAttribute(node, "dividerPositions"));
 		final List<org.w3c.dom.Node> childNodes = removeTextNodes(node.getChildNodes());
 		final Orientation orientation;
 		
@@ -346,18 +592,22 @@ public class AnchorageLayout {
 			orientation = Orientation.HORIZONTAL;
 		}
 		
-		Node firstNode = handleNode(childNodes.get(0), dockNodeList, dockStation);
-		Node secondNode = handleNode(childNodes.get(1), dockNodeList, dockStation);
-				
-		return DockCommons.createSplitter(firstNode, secondNode, orientation, dividerPosition);
+		List<Node> nodeList = new ArrayList<>();
+		for (org.w3c.dom.Node childNode : childNodes) {
+			Node child = handleNode(childNode, dockNodeIndex, dockStation);
+			if (child != null) {
+				nodeList.add(child);
+			}
+		}
+		return LayoutRestorer.createSplitter(nodeList, orientation, dividerPositions);
 	}
 	
-	private static Node handleDockTabberContainer(final org.w3c.dom.Node node, final List<DockNode> dockNodeList, final DockStation dockStation) {
+	private static Node handleDockTabberContainer(final org.w3c.dom.Node node, final DockNodeIndex dockNodeIndex, final DockStation dockStation) {
 		final List<org.w3c.dom.Node> childNodes = removeTextNodes(node.getChildNodes());
 		
 		List<Node> nodeList = new ArrayList<>();
 		for (int i = childNodes.size() - 1; i >= 0; i--) {
-			nodeList.add(handleNode(childNodes.get(i), dockNodeList, dockStation));
+			nodeList.add(handleNode(childNodes.get(i), dockNodeIndex, dockStation));
 		}
 		
 		return DockCommons.createTabber(nodeList);
@@ -24,8 +24,10 @@
 package com.anchorage.system;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import com.anchorage.docks.containers.StageFloatable;
 import com.anchorage.docks.node.DockNode;
 import com.anchorage.docks.node.ui.DockUIPanel;
 import com.anchorage.docks.stations.DockStation;
@@ -34,6 +36,7 @@ import com.sun.javafx.css.StyleManager;
 
 import javafx.scene.Node;
 import javafx.scene.image.Image;
+import javafx.stage.Window;
 
 /**
  *
@@ -42,13 +45,17 @@ import javafx.scene.image.Image;
 public class AnchorageSystem {
 
 	private static final List<DockStation> stations;
+	private static final List<StageFloatable> floatingStages;
 	private static final Image emptyIconImage;
 	private static final Image emptySubstationIconImage;
 
 	private static DockStation currentStationFromDrag;
+	private static DockStation hoveredStation;
+	private static DockNode currentNodeFromDrag;
 
 	static {
 		stations = new ArrayList<>();
+		floatingStages = new ArrayList<>();
 		emptyIconImage = new Image("empty.png");
 		emptySubstationIconImage = new Image("substation.png");
 	}
@@ -87,29 +94,90 @@ public class AnchorageSystem {
         return container;
     }
 
+	/**
+	 * Registers a floating stage, from its creation until it is closed.
+	 * 
+	 * @param stage the floating stage
+	 */
+	public static void registerFloatingStage(StageFloatable stage) {
+		floatingStages.add(stage);
+	}
+
+	public static void unregisterFloatingStage(StageFloatable stage) {
+		floatingStages.remove(stage);
+	}
+
+	/**
+	 * Get the floating stages of all the stations, in order of creation.
+	 * 
+	 * @return an unmodifiable view of the live floating stages
+	 */
+	public static List<StageFloatable> getFloatingStages() {
+		return Collections.unmodifiableList(floatingStages);
+	}
+
 	public static void installDefaultStyle() {
 		StyleManager.getInstance().addUserAgentStylesheet("AnchorFX.css");
 	}
 
 	public static void prepareDraggingZoneFor(DockStation station, DockNode source) {
 		currentStationFromDrag = station;
+		currentNodeFromDrag = source;
+		hoveredStation = station;
+		station.captureDragGeometry();
 		station.prepareZones(source);
-		if (currentStationFromDrag.isSubStation())
-			return;
-		if (station.isCommonStation()) {
-			stations.stream().filter(s -> s != station && s.isCommonStation()).forEach(s -> s.prepareZones(source));
-		}
 	}
 
 	public static void searchTargetNode(double x, double y) {
 
 		if (currentStationFromDrag.isCommonStation() && !currentStationFromDrag.isSubStation()) {
-			stations.stream().filter(s -> s.isCommonStation()).forEach(s -> s.searchTargetNode(x, y));
+			DockStation station = searchStationAt(x, y);
+			if (station != hoveredStation) {
+				if (hoveredStation != null) {
+					hoveredStation.clearDragTarget();
+					hoveredStation.closeZones();
+					hoveredStation.releaseDragGeometry();
+				}
+				hoveredStation = station;
+				if (hoveredStation != null) {
+					hoveredStation.captureDragGeometry();
+					hoveredStation.prepareZones(currentNodeFromDrag);
+				}
+			}
+			if (hoveredStation != null) {
+				hoveredStation.searchTargetNode(x, y);
+			}
 		} else {
 			currentStationFromDrag.searchTargetNode(x, y);
 		}
 	}
 
+	/**
+	 * Routes a drag over common stations: finds the station whose window is
+	 * under the pointer, so that only that station runs the hit testing. JavaFX
+	 * does not expose the stacking order of windows, so when windows overlap
+	 * the focused one wins, then the station already hovered.
+	 */
+	private static DockStation searchStationAt(double x, double y) {
+		DockStation found = null;
+		for (DockStation station : stations) {
+			if (!station.isCommonStation() || station.getScene() == null) {
+				continue;
+			}
+			Window window = station.getStationWindow();
+			if (window == null || !window.isShowing() || !station.isInnerPosition(x, y)) {
+				continue;
+			}
+			if (window.isFocused()) {
+				return station;
+			}
+			if (found == null || station == hoveredStation) {
+				found = station;
+			}
+		}
+		return found;
+	}
+
 	public static void finalizeDragging() {
 		if (currentStationFromDrag.isSubStation()) {
 			currentStationFromDrag.closeZones();
@@ -128,5 +196,12 @@ public class AnchorageSystem {
 			}
 		}
 
+		currentStationFromDrag.releaseDragGeometry();
+		stations.forEach(s -> {
+			s.releaseDragGeometry();
+			s.clearDragTarget();
+		});
+		hoveredStation = null;
+		currentNodeFromDrag = null;
 	}
 }
@@ -0,0 +1,429 @@
+package com.anchorage.system;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.anchorage.docks.node.DockNode;
+import com.anchorage.docks.stations.DockStation;
+
+import javafx.geometry.Orientation;
+
+/**
+ * Compact binary layout encoding, holding the same structure as the XML
+ * layouts of {@link AnchorageLayout}.
+ * <p>
+ * A file starts with the magic number and the format version, followed by the
+ * table of the strings used by the layout, each stored once, and by the
+ * layout itself as a stream of one byte tags. Counts and string references
+ * are unsigned varints, coordinates and divider positions are packed 8 byte
+ * doubles and the orientation of a splitter is kept in the low bit of its tag.
+ */
+public class BinaryLayoutCodec {
+
+	private static final int MAGIC = 0x4146584C; // "AFXL"
+	static final int VERSION = 2;
+	private static final int VERSION_WITHOUT_IDS = 1;
+
+	private static final int TAG_EOF = 0x00;
+	private static final int TAG_SPLITTER = 0x10; // | 1 if vertical
+	private static final int TAG_TABBER = 0x20;
+	private static final int TAG_SUBSTATION = 0x30;
+	private static final int TAG_END = 0x40;
+	private static final int TAG_DOCK_NODE = 0x50;
+	private static final int TAG_FLOATING_NODE = 0x60;
+
+	/////////////////////////////
+	// Save Layout
+	////////////////////////////
+
+	/**
+	 * Saves layout of the DockStation. <br/>
+	 * 
+	 * @param rootDockStation Root dock station
+	 * @param filePath file path where to save layout.
+	 * @return boolean if saving layout has been successful.
+	 */
+	public static boolean saveLayout(final DockStation rootDockStation, final String filePath) {
+		if (rootDockStation.getChildren().isEmpty()) {
+			return false;
+		}
+		try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = encode(rootDockStation);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Encodes layout of the DockStation.
+	 * 
+	 * @param rootDockStation Root dock station
+	 * @return buffer ready to be read, holding the whole layout
+	 */
+	public static ByteBuffer encode(final DockStation rootDockStation) {
+		LayoutWriter writer = new LayoutWriter();
+		AnchorageLayout.visitLayout(rootDockStation, writer);
+		return writer.toBuffer();
+	}
+
+	private static final class LayoutWriter implements LayoutVisitor {
+
+		private final Map<String, Integer> strings = new HashMap<>();
+		private final List<byte[]> stringTable = new ArrayList<>();
+		private final GrowableBuffer body = new GrowableBuffer(1024);
+
+		private int intern(final String value) {
+			Integer index = strings.get(value);
+			if (index == null) {
+				index = stringTable.size();
+				strings.put(value, index);
+				stringTable.add(value.getBytes(StandardCharsets.UTF_8));
+			}
+			return index;
+		}
+
+		@Override
+		public void startSplitter(final Orientation orientation, final double[] dividerPositions) {
+			body.put(TAG_SPLITTER | (orientation == Orientation.VERTICAL ? 1 : 0));
+			body.putVarint(dividerPositions.length);
+			for (double dividerPosition : dividerPositions) {
+				body.putDouble(dividerPosition);
+			}
+		}
+
+		@Override
+		public void startTabber() {
+			body.put(TAG_TABBER);
+		}
+
+		@Override
+		public void startSubStation(final String id, final String name) {
+			body.put(TAG_SUBSTATION);
+			putOptional(id);
+			body.putVarint(intern(name));
+		}
+
+		@Override
+		public void end() {
+			body.put(TAG_END);
+		}
+
+		@Override
+		public void dockNode(final String id, final String name, final String contentType) {
+			body.put(TAG_DOCK_NODE);
+			putOptional(id);
+			body.putVarint(intern(name));
+			putOptional(contentType);
+		}
+
+		private void putOptional(final String value) {
+			// 0 stands for no value
+			body.putVarint(value == null ? 0 : intern(value) + 1);
+		}
+
+		@Override
+		public void floatingNode(final String id, final String name, final double x, final double y, final double width,
+				final double height) {
+			body.put(TAG_FLOATING_NODE);
+			putOptional(id);
+			body.putVarint(intern(name));
+			body.putDouble(x);
+			body.putDouble(y);
+			body.putDouble(width);
+			body.putDouble(height);
+		}
+
+		private ByteBuffer toBuffer() {
+			body.put(TAG_EOF);
+
+			GrowableBuffer header = new GrowableBuffer(64 + stringTable.size() * 16);
+			header.putInt(MAGIC);
+			header.putVarint(VERSION);
+			header.putVarint(stringTable.size());
+			for (byte[] string : stringTable) {
+				header.putVarint(string.length);
+				header.put(string);
+			}
+
+			ByteBuffer headerBuffer = header.flip();
+			ByteBuffer bodyBuffer = body.flip();
+			ByteBuffer buffer = ByteBuffer.allocate(headerBuffer.remaining() + bodyBuffer.remaining());
+			buffer.put(headerBuffer).put(bodyBuffer);
+			buffer.flip();
+			return buffer;
+		}
+	}
+
+	private static final class GrowableBuffer {
+
+		private ByteBuffer buffer;
+
+		private GrowableBuffer(final int capacity) {
+			buffer = ByteBuffer.allocate(capacity);
+		}
+
+		private void ensure(final int length) {
+			if (buffer.remaining() < length) {
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+		}
+
+		private void put(final int value) {
+			ensure(1);
+			buffer.put((byte) value);
+		}
+
+		private void put(final byte[] value) {
+			ensure(value.length);
+			buffer.put(value);
+		}
+
+		private void putInt(final int value) {
+			ensure(4);
+			buffer.putInt(value);
+		}
+
+		private void putDouble(final double value) {
+			ensure(8);
+			buffer.putDouble(value);
+		}
+
+		private void putVarint(int value) {
+			ensure(5);
+			while ((value & ~0x7F) != 0) {
+				buffer.put((byte) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			buffer.put((byte) value);
+		}
+
+		private ByteBuffer flip() {
+			buffer.flip();
+			return buffer;
+		}
+	}
+
+	/////////////////////////////
+	// Restore Layout
+	////////////////////////////
+
+	/**
+	 * Restores layout of already docked nodes.
+	 * 
+	 * @param dockStation DockStation with all docked nodes.
+	 * @param filePath Path to file, where layout is saved.
+	 * @return boolean if restoring layout has been successful.
+	 */
+	public static boolean restoreLayout(final DockStation dockStation, final String filePath) {
+		return restoreLayout(dockStation, filePath, null);
+	}
+
+	/**
+	 * Restores layout of already docked nodes, recording the time spent in each
+	 * phase of the restore. The whole file is decoded before the station is
+	 * changed, so a corrupted file leaves the station as it is; the detach
+	 * phase includes decoding the file.
+	 * 
+	 * @param dockStation DockStation with all docked nodes.
+	 * @param filePath Path to file, where layout is saved.
+	 * @param timing receiver of the timings, may be null
+	 * @return boolean if restoring layout has been successful.
+	 */
+	public static boolean restoreLayout(final DockStation dockStation, final String filePath,
+			final LayoutRestoreTiming timing) {
+		if (timing != null) {
+			timing.start(dockStation);
+		}
+		try {
+			LayoutModel.Builder builder = new LayoutModel.Builder();
+			decode(readFile(Paths.get(filePath)), builder);
+			LayoutModel model = builder.build();
+
+			// Take the docked tree out of the station and collect all the nodes
+			final List<DockNode> dockNodeList = AnchorageLayout.detachAllDocks(dockStation);
+			if (timing != null) {
+				timing.detached();
+			}
+
+			LayoutRestorer restorer = new LayoutRestorer(dockStation, dockNodeList, timing);
+			model.accept(restorer);
+			return restorer.finish();
+		} catch (Exception e) {
+			e.printStackTrace();
+			if (timing != null) {
+				timing.cancel();
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Streams an encoded layout to the visitor.
+	 * 
+	 * @param buffer the encoded layout
+	 * @param visitor receiver of the layout
+	 * @throws IOException if the buffer does not hold a supported layout
+	 */
+	static void decode(final ByteBuffer buffer, final LayoutVisitor visitor) throws IOException {
+		readBody(buffer, readHeader(buffer), visitor);
+	}
+
+	private static ByteBuffer readFile(final Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Layout file too large: " + path);
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				// read the whole file
+			}
+			buffer.flip();
+			return buffer;
+		}
+	}
+
+	private static final class Header {
+		private final int version;
+		private final String[] strings;
+
+		private Header(final int version, final String[] strings) {
+			this.version = version;
+			this.strings = strings;
+		}
+
+		private String getString(final ByteBuffer buffer) throws IOException {
+			return strings[getVarint(buffer)];
+		}
+
+		private String getOptional(final ByteBuffer buffer) throws IOException {
+			int index = getVarint(buffer);
+			return (index == 0) ? null : strings[index - 1];
+		}
+
+		private String getId(final ByteBuffer buffer) throws IOException {
+			return (version == VERSION_WITHOUT_IDS) ? null : getOptional(buffer);
+		}
+	}
+
+	private static Header readHeader(final ByteBuffer buffer) throws IOException {
+		try {
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException("Not a binary layout");
+			}
+			int version = getVarint(buffer);
+			if (version != VERSION && version != VERSION_WITHOUT_IDS) {
+				throw new IOException("Unsupported binary layout version " + version);
+			}
+			// every string takes at least the byte of its length
+			String[] strings = new String[getCount(buffer, 1)];
+			for (int i = 0; i < strings.length; i++) {
+				byte[] bytes = new byte[getCount(buffer, 1)];
+				buffer.get(bytes);
+				strings[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+			return new Header(version, strings);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated binary layout", e);
+		}
+	}
+
+	private static void readBody(final ByteBuffer buffer, final Header header, final LayoutVisitor visitor)
+			throws IOException {
+		try {
+			int depth = 0;
+			int tag;
+			while ((tag = buffer.get() & 0xFF) != TAG_EOF) {
+				switch (tag & 0xF0) {
+				case TAG_SPLITTER:
+					Orientation orientation = ((tag & 1) != 0) ? Orientation.VERTICAL : Orientation.HORIZONTAL;
+					double[] dividerPositions = new double[getCount(buffer, 8)];
+					for (int i = 0; i < dividerPositions.length; i++) {
+						dividerPositions[i] = buffer.getDouble();
+					}
+					visitor.startSplitter(orientation, dividerPositions);
+					depth++;
+					break;
+				case TAG_TABBER:
+					visitor.startTabber();
+					depth++;
+					break;
+				case TAG_SUBSTATION:
+					String subStationId = header.getId(buffer);
+					visitor.startSubStation(subStationId, header.getString(buffer));
+					depth++;
+					break;
+				case TAG_END:
+					if (depth == 0) {
+						throw new IOException("Unbalanced end in binary layout");
+					}
+					visitor.end();
+					depth--;
+					break;
+				case TAG_DOCK_NODE:
+					String id = header.getId(buffer);
+					String name = header.getString(buffer);
+					visitor.dockNode(id, name, header.getOptional(buffer));
+					break;
+				case TAG_FLOATING_NODE:
+					String floatingId = header.getId(buffer);
+					visitor.floatingNode(floatingId, header.getString(buffer), buffer.getDouble(), buffer.getDouble(),
+							buffer.getDouble(), buffer.getDouble());
+					break;
+				default:
+					throw new IOException("Unknown tag " + tag + " in binary layout");
+				}
+			}
+			if (depth != 0) {
+				throw new IOException("Unterminated element in binary layout");
+			}
+		} catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Corrupted binary layout", e);
+		}
+	}
+
+	/**
+	 * Reads the count of the items that follow, which cannot exceed what is
+	 * left in the buffer.
+	 * 
+	 * @param itemSize minimum size of an item in bytes
+	 */
+	private static int getCount(final ByteBuffer buffer, final int itemSize) throws IOException {
+		int count = getVarint(buffer);
+		if (count < 0 || count > buffer.remaining() / itemSize) {
+			throw new IOException("Corrupted count in binary layout");
+		}
+		return count;
+	}
+
+	private static int getVarint(final ByteBuffer buffer) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint in binary layout");
+	}
+}
@@ -0,0 +1,73 @@
+package com.anchorage.system;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.anchorage.docks.node.DockNode;
+
+/**
+ * Finds the nodes referenced by a layout, by identifier, or by title for the
+ * layouts saved without identifiers or with identifiers of another session.
+ * Nodes sharing a title are handed out in order.
+ */
+final class DockNodeIndex {
+
+	private final Map<String, DockNode> nodesById = new HashMap<>();
+	private final Map<String, Deque<DockNode>> nodesByTitle = new HashMap<>();
+	private final Set<DockNode> taken = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	DockNodeIndex(final List<DockNode> dockNodeList) {
+		for (DockNode dockNode : dockNodeList) {
+			nodesById.putIfAbsent(dockNode.getDockId(), dockNode);
+			nodesByTitle.computeIfAbsent(dockNode.getContent().titleProperty().get(), title -> new ArrayDeque<>())
+					.add(dockNode);
+		}
+	}
+
+	/**
+	 * Takes the node of a layout element, which is not returned again.
+	 * 
+	 * @param id identifier saved in the layout, or null
+	 * @param title title saved in the layout
+	 * @return the node, or null if there is none left
+	 */
+	DockNode take(final String id, final String title) {
+		DockNode dockNode = (id != null) ? nodesById.get(id) : null;
+		if (dockNode == null || taken.contains(dockNode)) {
+			dockNode = null;
+			Deque<DockNode> sameTitle = (title != null) ? nodesByTitle.get(title) : null;
+			while (sameTitle != null && !sameTitle.isEmpty() && dockNode == null) {
+				DockNode candidate = sameTitle.poll();
+				if (!taken.contains(candidate)) {
+					dockNode = candidate;
+				}
+			}
+		}
+		if (dockNode != null) {
+			taken.add(dockNode);
+		}
+		return dockNode;
+	}
+
+	/**
+	 * Finds a node without taking it.
+	 * 
+	 * @param id identifier saved in the layout, or null
+	 * @param title title saved in the layout
+	 * @return the node, or null if there is none
+	 */
+	DockNode find(final String id, final String title) {
+		DockNode dockNode = (id != null) ? nodesById.get(id) : null;
+		if (dockNode == null && title != null) {
+			Deque<DockNode> sameTitle = nodesByTitle.get(title);
+			dockNode = (sameTitle != null) ? sameTitle.peek() : null;
+		}
+		return dockNode;
+	}
+}
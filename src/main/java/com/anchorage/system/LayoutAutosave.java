@@ -0,0 +1,145 @@
+package com.anchorage.system;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+
+import com.anchorage.docks.stations.DockLayoutEvent;
+import com.anchorage.docks.stations.DockStation;
+import com.anchorage.docks.stations.interfaces.DockLayoutListener;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.util.Duration;
+
+/**
+ * Saves the layout of a station automatically. Every change of the layout
+ * marks it as dirty and restarts a quiet period; the layout is saved only once
+ * the quiet period elapses without further changes, so dragging a divider
+ * writes a single file at the end of the drag. A layout identical to the last
+ * saved one is not written again. Maximizing or restoring a dock, selecting
+ * a tab and moving or resizing a floating stage are not part of saved layouts
+ * and do not mark the layout dirty.
+ * <p>
+ * Saving goes through {@link AnchorageLayout#saveLayoutAsync(DockStation, String)},
+ * the file is replaced atomically and is never left half written.
+ */
+public final class LayoutAutosave {
+
+	public static final Duration DEFAULT_QUIET_PERIOD = Duration.seconds(1);
+
+	private final DockStation station;
+	private final Path path;
+	private final PauseTransition quietPeriod;
+	private final DockLayoutListener layoutListener;
+
+	private boolean started;
+	private boolean dirty;
+	// last layout written, or null if it is unknown
+	private LayoutModel savedModel;
+
+	/**
+	 * Creates an autosave of the station to the file. It does nothing until
+	 * {@link #start()} is called.
+	 * 
+	 * @param station Root dock station
+	 * @param filePath file path where to save layout.
+	 */
+	public LayoutAutosave(final DockStation station, final String filePath) {
+		this.station = station;
+		this.path = Paths.get(filePath);
+		this.quietPeriod = new PauseTransition(DEFAULT_QUIET_PERIOD);
+		this.quietPeriod.setOnFinished(event -> save());
+		this.layoutListener = this::layoutChanged;
+	}
+
+	public void setQuietPeriod(final Duration duration) {
+		quietPeriod.setDuration(duration);
+	}
+
+	public Duration getQuietPeriod() {
+		return quietPeriod.getDuration();
+	}
+
+	/**
+	 * Starts listening to the changes of the layout of the station.
+	 */
+	public void start() {
+		if (!started) {
+			station.addLayoutListener(layoutListener);
+			started = true;
+		}
+	}
+
+	/**
+	 * Stops listening to the changes of the layout, saving it first if it is
+	 * dirty.
+	 */
+	public void stop() {
+		if (started) {
+			station.removeLayoutListener(layoutListener);
+			started = false;
+			if (dirty) {
+				saveNow();
+			}
+		}
+	}
+
+	public boolean isStarted() {
+		return started;
+	}
+
+	/**
+	 * @return true if the layout changed since it was last saved
+	 */
+	public boolean isDirty() {
+		return dirty;
+	}
+
+	private void layoutChanged(final DockLayoutEvent event) {
+		if (!LayoutModelTracker.isLayoutChange(event)) {
+			return;
+		}
+		dirty = true;
+		quietPeriod.playFromStart();
+	}
+
+	/**
+	 * Saves the layout without waiting for the end of the quiet period.
+	 * 
+	 * @return completed with true once the layout has been saved, or is already
+	 *         saved, or with false if saving layout failed
+	 */
+	public CompletableFuture<Boolean> saveNow() {
+		quietPeriod.stop();
+		return save();
+	}
+
+	private CompletableFuture<Boolean> save() {
+		dirty = false;
+		if (station.getChildren().isEmpty()) {
+			return CompletableFuture.completedFuture(false);
+		}
+		final LayoutModel model = LayoutModel.capture(station);
+		if (model.equals(savedModel)) {
+			return CompletableFuture.completedFuture(true);
+		}
+		savedModel = model;
+
+		CompletableFuture<Boolean> future = LayoutSaveQueue.enqueue(model, path);
+		future.thenAccept(saved -> {
+			if (!saved) {
+				Platform.runLater(() -> saveFailed(model));
+			}
+		});
+		return future;
+	}
+
+	private void saveFailed(final LayoutModel model) {
+		// try again on the next change
+		if (savedModel == model) {
+			savedModel = null;
+			dirty = true;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package com.anchorage.system;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.geometry.Orientation;
+
+/**
+ * Mutable copy of an element of a {@link LayoutModel}, edited by transactions
+ * and matched against the live layout by the reconciler. Tabs are kept in
+ * their order in the tab pane.
+ */
+final class LayoutElement {
+
+	enum Kind {
+		SPLITTER, TABBER, SUBSTATION, NODE, FLOATING
+	}
+
+	final Kind kind;
+	final List<LayoutElement> children = new ArrayList<>();
+	Orientation orientation;
+	double[] dividerPositions;
+	String id;
+	String name;
+	double x;
+	double y;
+	double width;
+	double height;
+
+	LayoutElement(final Kind kind) {
+		this.kind = kind;
+	}
+
+	/**
+	 * Copies an element of a layout model, with its children.
+	 * 
+	 * @param element element of the model, or null
+	 * @return the copy, or null
+	 */
+	static LayoutElement of(final LayoutModel.Element element) {
+		if (element == null) {
+			return null;
+		}
+		LayoutElement copy;
+		switch (element.getKind()) {
+		case SPLIT:
+			copy = new LayoutElement(Kind.SPLITTER);
+			copy.orientation = element.getOrientation();
+			copy.dividerPositions = element.getDividerPositions();
+			break;
+		case TABS:
+			copy = new LayoutElement(Kind.TABBER);
+			break;
+		case SUBSTATION:
+			copy = new LayoutElement(Kind.SUBSTATION);
+			break;
+		case FLOATING:
+			copy = new LayoutElement(Kind.FLOATING);
+			copy.x = element.getX();
+			copy.y = element.getY();
+			copy.width = element.getWidth();
+			copy.height = element.getHeight();
+			break;
+		default:
+			copy = new LayoutElement(Kind.NODE);
+			break;
+		}
+		copy.id = element.getId();
+		copy.name = element.getName();
+		for (LayoutModel.Element child : element.getChildren()) {
+			copy.children.add(of(child));
+		}
+		return copy;
+	}
+
+	/**
+	 * Copies the floating docks of a layout model.
+	 */
+	static List<LayoutElement> floatingOf(final LayoutModel model) {
+		List<LayoutElement> floating = new ArrayList<>();
+		for (LayoutModel.Element element : model.getFloating()) {
+			floating.add(of(element));
+		}
+		return floating;
+	}
+}
@@ -0,0 +1,645 @@
+package com.anchorage.system;
+
+import static com.anchorage.docks.containers.common.AnchorageSettings.FLOATING_NODE_DROPSHADOW_RADIUS;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+import com.anchorage.docks.containers.StageFloatable;
+import com.anchorage.docks.containers.interfaces.DockContainableComponent;
+import com.anchorage.docks.containers.interfaces.DockContainer;
+import com.anchorage.docks.containers.subcontainers.DockSplitterContainer;
+import com.anchorage.docks.containers.subcontainers.DockTabberContainer;
+import com.anchorage.docks.node.DockNode;
+import com.anchorage.docks.stations.DockLayoutEvent;
+import com.anchorage.docks.stations.DockStation;
+import com.anchorage.docks.stations.DockSubStation;
+import com.anchorage.docks.stations.interfaces.DockLayoutListener;
+
+import javafx.animation.PauseTransition;
+import javafx.scene.Node;
+import javafx.util.Duration;
+
+/**
+ * Incremental persistence of the layout of a station. The layout is kept as
+ * a snapshot file, written like {@link AnchorageLayout#saveLayoutAsync(DockStation, String)}
+ * does, followed by journal files where every change of the layout is appended
+ * as a small record. Once the journal grows over a threshold, or when a change
+ * cannot be expressed as a record, the journal is compacted: a new snapshot is
+ * written in the background and the journal files it includes are deleted.
+ * <p>
+ * Journal files are named after the snapshot file followed by
+ * <code>.journal.&lt;sequence&gt;</code>, and the snapshot stores the sequence
+ * of the last journal file it includes, so a crash at any time leaves a
+ * snapshot and the journal files to replay on top of it. A record torn by a
+ * crash is detected by its checksum and ignored with everything after it.
+ * Every record is forced to the disk once appended, so the journal also
+ * survives a crash of the system.
+ * <p>
+ * Like the other saved layouts, the journal does not keep the selected tabs,
+ * nor the bounds a floating stage is given after it has been floated.
+ */
+public final class LayoutJournal {
+
+	public static final long DEFAULT_COMPACTION_THRESHOLD = 64 * 1024;
+
+	private static final int MAGIC = 0x4146584A; // "AFXJ"
+	private static final int VERSION = 2;
+	private static final Duration DIVIDER_DELAY = Duration.millis(200);
+
+	private static final int RECORD_DOCK_STATION = 1;
+	private static final int RECORD_DOCK_NODE = 2;
+	private static final int RECORD_UNDOCK = 3;
+	private static final int RECORD_FLOAT = 4;
+	private static final int RECORD_DIVIDERS = 5;
+	private static final int RECORD_NORMALIZED = 6;
+
+	private final DockStation station;
+	private final Path snapshotPath;
+	private final String journalPrefix;
+	private final DockLayoutListener layoutListener;
+	private final PauseTransition dividerDelay;
+
+	private long compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+	private boolean started;
+	private boolean replaying;
+	private long sequence;
+	private FileChannel channel;
+	private long journalSize;
+	private byte[] pendingDividers;
+	private DockContainer pendingDividersContainer;
+
+	/**
+	 * Creates a journal of the station. It does nothing until {@link #start()}
+	 * is called.
+	 * 
+	 * @param station Root dock station
+	 * @param filePath file path of the snapshot, the journal files are created
+	 *            next to it.
+	 */
+	public LayoutJournal(final DockStation station, final String filePath) {
+		this.station = station;
+		this.snapshotPath = Paths.get(filePath).toAbsolutePath();
+		this.journalPrefix = snapshotPath.getFileName().toString() + ".journal.";
+		this.layoutListener = this::layoutChanged;
+		this.dividerDelay = new PauseTransition(DIVIDER_DELAY);
+		this.dividerDelay.setOnFinished(event -> flushDividers());
+	}
+
+	/**
+	 * Sets the size of the journal, in bytes, over which it is compacted.
+	 * 
+	 * @param bytes the threshold
+	 */
+	public void setCompactionThreshold(final long bytes) {
+		if (bytes <= 0) {
+			throw new IllegalArgumentException("Compaction threshold must be positive");
+		}
+		compactionThreshold = bytes;
+	}
+
+	public long getCompactionThreshold() {
+		return compactionThreshold;
+	}
+
+	/**
+	 * Starts journaling the changes of the layout of the station. A first
+	 * snapshot of the current layout is written, replacing the journaled
+	 * layout, which must be restored with {@link #restore()} before.
+	 */
+	public void start() {
+		if (started) {
+			return;
+		}
+		sequence = Math.max(lastSequence(), readSnapshotSequence());
+		started = true;
+		station.addLayoutListener(layoutListener);
+		compact();
+	}
+
+	/**
+	 * Stops journaling the changes of the layout.
+	 */
+	public void stop() {
+		if (!started) {
+			return;
+		}
+		flushDividers();
+		station.removeLayoutListener(layoutListener);
+		started = false;
+		closeChannel();
+	}
+
+	public boolean isStarted() {
+		return started;
+	}
+
+	/////////////////////////////
+	// Restore Layout
+	////////////////////////////
+
+	/**
+	 * Restores the layout of already docked nodes: the snapshot, then the
+	 * records of the journal files written after it.
+	 * 
+	 * @return boolean if restoring layout has been successful.
+	 */
+	public boolean restore() {
+		if (!Files.exists(snapshotPath)) {
+			return false;
+		}
+		flushDividers();
+		List<DockNode> knownNodes = new ArrayList<>();
+		collectDockNodes(station, knownNodes);
+
+		replaying = true;
+		try {
+			long snapshotSequence = readSnapshotSequence();
+			if (!StaxLayoutCodec.restoreLayout(station, snapshotPath.toString())) {
+				return false;
+			}
+			// replaying moves the restored nodes but docks no new ones, the index is built once
+			List<DockNode> nodes = new ArrayList<>();
+			collectDockNodes(station, nodes);
+			nodes.addAll(knownNodes);
+			DockNodeIndex index = new DockNodeIndex(nodes);
+			for (Path journal : journalFiles().tailMap(snapshotSequence, false).values()) {
+				replay(journal, index);
+			}
+		} finally {
+			replaying = false;
+		}
+		if (started) {
+			compact();
+		}
+		return true;
+	}
+
+	private void replay(final Path journal, final DockNodeIndex index) {
+		byte[] content;
+		try {
+			content = Files.readAllBytes(journal);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(content);
+		if (buffer.remaining() < 5 || buffer.getInt() != MAGIC) {
+			return;
+		}
+		if (buffer.get() != VERSION) {
+			return;
+		}
+		NodeReader nodes = new NodeReader(index);
+		CRC32 crc = new CRC32();
+		while (buffer.remaining() >= 4) {
+			int length = buffer.getInt();
+			if (length < 0 || buffer.remaining() < length + 4) {
+				return; // torn record
+			}
+			crc.reset();
+			crc.update(content, buffer.position(), length);
+			int recordOffset = buffer.position();
+			buffer.position(recordOffset + length);
+			if ((int) crc.getValue() != buffer.getInt()) {
+				return; // torn record
+			}
+			try {
+				applyRecord(new DataInputStream(new ByteArrayInputStream(content, recordOffset, length)), nodes);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private void applyRecord(final DataInputStream input, final NodeReader nodes) throws IOException {
+		int type = input.readByte();
+		switch (type) {
+		case RECORD_DOCK_STATION: {
+			boolean subStation = input.readBoolean();
+			DockNode stationNode = subStation ? nodes.read(input) : null;
+			DockNode node = nodes.read(input);
+			DockNode.DockPosition position = DockNode.DockPosition.values()[input.readByte()];
+			double percentage = input.readDouble();
+			DockStation target = !subStation ? station
+					: (stationNode instanceof DockSubStation) ? ((DockSubStation) stationNode).getSubStation() : null;
+			if (node != null && target != null) {
+				node.dock(target, position, percentage);
+			}
+			break;
+		}
+		case RECORD_DOCK_NODE: {
+			DockNode node = nodes.read(input);
+			DockNode target = nodes.read(input);
+			DockNode.DockPosition position = DockNode.DockPosition.values()[input.readByte()];
+			double percentage = input.readDouble();
+			if (node != null && target != null && target.getParentContainer() != null) {
+				node.dock(target, position, percentage);
+			}
+			break;
+		}
+		case RECORD_UNDOCK: {
+			DockNode node = nodes.read(input);
+			if (node != null) {
+				node.undock();
+			}
+			break;
+		}
+		case RECORD_FLOAT: {
+			DockNode node = nodes.read(input);
+			double x = input.readDouble();
+			double y = input.readDouble();
+			double width = input.readDouble();
+			double height = input.readDouble();
+			if (node != null) {
+				node.undock();
+				node.dockAsFloating(station.getStationWindow(), station, x, y, width, height);
+			}
+			break;
+		}
+		case RECORD_DIVIDERS: {
+			int[] path = new int[input.readShort()];
+			for (int i = 0; i < path.length; i++) {
+				path[i] = input.readShort();
+			}
+			double[] positions = new double[input.readShort()];
+			for (int i = 0; i < positions.length; i++) {
+				positions[i] = input.readDouble();
+			}
+			Node container = resolvePath(path);
+			if (container instanceof DockSplitterContainer) {
+				((DockSplitterContainer) container).setDividerPositions(positions);
+			}
+			break;
+		}
+		case RECORD_NORMALIZED:
+			// normalizing the same tree gives the same tree, the records after it address its containers
+			AnchorageLayout.normalizeLayout(station);
+			break;
+		default:
+			throw new IOException("Unknown journal record " + type);
+		}
+	}
+
+	/**
+	 * Reads the references to nodes of the records of a journal file, looking
+	 * for the nodes in the restored layout first, then in the nodes docked
+	 * before the layout was restored.
+	 */
+	private static final class NodeReader {
+		private final DockNodeIndex index;
+
+		private NodeReader(final DockNodeIndex index) {
+			this.index = index;
+		}
+
+		private DockNode read(final DataInputStream input) throws IOException {
+			String id = input.readUTF();
+			String title = input.readUTF();
+			return index.find(id, title);
+		}
+	}
+
+	private static void collectDockNodes(final DockStation dockStation, final List<DockNode> list) {
+		for (DockNode node : dockStation.getDockNodes()) {
+			list.add(node);
+			if (node instanceof DockSubStation) {
+				collectDockNodes(((DockSubStation) node).getSubStation(), list);
+			}
+		}
+	}
+
+	/////////////////////////////
+	// Journaling
+	////////////////////////////
+
+	private void layoutChanged(final DockLayoutEvent event) {
+		if (replaying) {
+			return;
+		}
+		switch (event.getType()) {
+		case DOCKED:
+			if (event.getPosition() == null) {
+				compact();
+			} else if (event.getTarget() != null) {
+				append(record(RECORD_DOCK_NODE, output -> {
+					writeNode(output, event.getNode());
+					writeNode(output, event.getTarget());
+					output.writeByte(event.getPosition().ordinal());
+					output.writeDouble(event.getPercentage());
+				}));
+			} else {
+				append(record(RECORD_DOCK_STATION, output -> {
+					DockStation dockStation = event.getStation();
+					output.writeBoolean(dockStation.isSubStation());
+					if (dockStation.isSubStation()) {
+						writeNode(output, dockStation.getDockNodeForSubStation());
+					}
+					writeNode(output, event.getNode());
+					output.writeByte(event.getPosition().ordinal());
+					output.writeDouble(event.getPercentage());
+				}));
+			}
+			break;
+		case UNDOCKED:
+			append(record(RECORD_UNDOCK, output -> writeNode(output, event.getNode())));
+			break;
+		case FLOATED:
+			StageFloatable stage = event.getNode().getFloatableStage();
+			if (stage == null || stage.getScene() == null) {
+				compact();
+			} else {
+				append(record(RECORD_FLOAT, output -> {
+					writeNode(output, event.getNode());
+					output.writeDouble(stage.getX() + FLOATING_NODE_DROPSHADOW_RADIUS);
+					output.writeDouble(stage.getY() + FLOATING_NODE_DROPSHADOW_RADIUS);
+					output.writeDouble(stage.getScene().getWidth());
+					output.writeDouble(stage.getScene().getHeight());
+				}));
+			}
+			break;
+		case DIVIDER_MOVED:
+			dividersMoved(event.getContainer());
+			break;
+		case NORMALIZED:
+			append(record(RECORD_NORMALIZED, output -> {
+				// the record carries no data
+			}));
+			break;
+		case MAXIMIZED:
+		case RESTORED:
+		case TAB_SELECTED:
+			// neither maximization nor the selected tabs are part of saved layouts
+			break;
+		default:
+			compact();
+			break;
+		}
+	}
+
+	private void dividersMoved(final DockContainer container) {
+		if (!(container instanceof DockSplitterContainer)) {
+			return;
+		}
+		List<Integer> path = pathOf((Node) container);
+		if (path == null) {
+			return; // not part of the layout anymore
+		}
+		if (pendingDividersContainer != null && pendingDividersContainer != container) {
+			flushDividers();
+		}
+		double[] positions = ((DockSplitterContainer) container).getDividerPositions();
+		pendingDividersContainer = container;
+		pendingDividers = record(RECORD_DIVIDERS, output -> {
+			output.writeShort(path.size());
+			for (int index : path) {
+				output.writeShort(index);
+			}
+			output.writeShort(positions.length);
+			for (double position : positions) {
+				output.writeDouble(position);
+			}
+		});
+		// a divider drag is journaled once it pauses
+		dividerDelay.playFromStart();
+	}
+
+	private void flushDividers() {
+		dividerDelay.stop();
+		if (pendingDividers != null) {
+			byte[] record = pendingDividers;
+			pendingDividers = null;
+			pendingDividersContainer = null;
+			append(record);
+		}
+	}
+
+	/**
+	 * Get the indexes leading from the station to the node, through containers
+	 * and substations
+	 */
+	private List<Integer> pathOf(final Node node) {
+		List<Integer> path = new ArrayList<>();
+		Node current = node;
+		while (current != station) {
+			if (current instanceof DockStation) {
+				// the station of a substation is entered through the substation
+				current = ((DockStation) current).getDockNodeForSubStation();
+				if (current == null) {
+					return null;
+				}
+				continue;
+			}
+			DockContainer parent = ((DockContainableComponent) current).getParentContainer();
+			int index = (parent != null) ? parent.indexOf(current) : -1;
+			if (index < 0) {
+				return null;
+			}
+			path.add(index);
+			current = (Node) parent;
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	private Node resolvePath(final int[] path) {
+		Node current = station;
+		for (int index : path) {
+			if (current instanceof DockSubStation) {
+				current = ((DockSubStation) current).getSubStation();
+			}
+			if (current instanceof DockStation) {
+				List<Node> children = ((DockStation) current).getChildren();
+				current = (index < children.size()) ? children.get(index) : null;
+			} else if (current instanceof DockSplitterContainer) {
+				List<Node> items = ((DockSplitterContainer) current).getItems();
+				current = (index < items.size()) ? items.get(index) : null;
+			} else if (current instanceof DockTabberContainer) {
+				DockTabberContainer tabber = (DockTabberContainer) current;
+				current = (index < tabber.getTabs().size()) ? tabber.getTabs().get(index).getContent() : null;
+			} else {
+				return null;
+			}
+		}
+		return current;
+	}
+
+	private static void writeNode(final DataOutputStream output, final DockNode node) throws IOException {
+		output.writeUTF(node.getDockId());
+		output.writeUTF(node.getContent().titleProperty().get());
+	}
+
+	@FunctionalInterface
+	private interface RecordWriter {
+		void write(DataOutputStream output) throws IOException;
+	}
+
+	private static byte[] record(final int type, final RecordWriter writer) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+			DataOutputStream output = new DataOutputStream(bytes);
+			output.writeByte(type);
+			writer.write(output);
+			output.flush();
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			// writing to memory
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void append(final byte[] record) {
+		if (!started) {
+			return;
+		}
+		if (record[0] != RECORD_DIVIDERS) {
+			flushDividers();
+		}
+		try {
+			if (channel == null) {
+				channel = FileChannel.open(journalPath(sequence), StandardOpenOption.CREATE,
+						StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+				journalSize = channel.size();
+				if (journalSize == 0) {
+					ByteBuffer header = ByteBuffer.allocate(5).putInt(MAGIC).put((byte) VERSION);
+					header.flip();
+					journalSize += writeFully(header);
+				}
+			}
+			CRC32 crc = new CRC32();
+			crc.update(record, 0, record.length);
+			ByteBuffer buffer = ByteBuffer.allocate(record.length + 8);
+			buffer.putInt(record.length).put(record).putInt((int) crc.getValue());
+			buffer.flip();
+			journalSize += writeFully(buffer);
+			// divider moves are buffered, so a record is forced at most once per change
+			channel.force(false);
+		} catch (IOException e) {
+			e.printStackTrace();
+			// the change is kept by a new snapshot instead
+			compact();
+			return;
+		}
+		if (journalSize > compactionThreshold) {
+			compact();
+		}
+	}
+
+	private int writeFully(final ByteBuffer buffer) throws IOException {
+		int written = 0;
+		while (buffer.hasRemaining()) {
+			written += channel.write(buffer);
+		}
+		return written;
+	}
+
+	/////////////////////////////
+	// Compaction
+	////////////////////////////
+
+	/**
+	 * Writes a snapshot of the current layout in the background and starts a
+	 * new journal file. The journal files included in the snapshot are deleted
+	 * once it has been written.
+	 * 
+	 * @return completed with true once the snapshot has been written, or with
+	 *         false if writing it failed
+	 */
+	public CompletableFuture<Boolean> compact() {
+		if (!started || replaying) {
+			return CompletableFuture.completedFuture(false);
+		}
+		flushDividers();
+		closeChannel();
+		final long includedSequence = sequence;
+		sequence++;
+		if (station.getChildren().isEmpty()) {
+			return CompletableFuture.completedFuture(false);
+		}
+		LayoutModel model = LayoutModel.capture(station).withJournalSequence(includedSequence);
+		CompletableFuture<Boolean> future = LayoutSaveQueue.enqueue(model, snapshotPath);
+		future.thenAccept(saved -> {
+			if (saved) {
+				deleteJournals(includedSequence);
+			}
+		});
+		return future;
+	}
+
+	private void closeChannel() {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			channel = null;
+			journalSize = 0;
+		}
+	}
+
+	private void deleteJournals(final long upToSequence) {
+		for (Path journal : journalFiles().headMap(upToSequence, true).values()) {
+			try {
+				Files.deleteIfExists(journal);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private Path journalPath(final long journalSequence) {
+		return snapshotPath.resolveSibling(journalPrefix + journalSequence);
+	}
+
+	private TreeMap<Long, Path> journalFiles() {
+		TreeMap<Long, Path> journals = new TreeMap<>();
+		Path directory = snapshotPath.getParent();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, journalPrefix + "*")) {
+			for (Path journal : stream) {
+				try {
+					journals.put(Long.parseLong(journal.getFileName().toString().substring(journalPrefix.length())),
+							journal);
+				} catch (NumberFormatException e) {
+					// not a journal file
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return journals;
+	}
+
+	private long lastSequence() {
+		TreeMap<Long, Path> journals = journalFiles();
+		return journals.isEmpty() ? 0 : journals.lastKey();
+	}
+
+	private long readSnapshotSequence() {
+		if (!Files.exists(snapshotPath)) {
+			return -1;
+		}
+		try {
+			return StaxLayoutCodec.readJournalSequence(snapshotPath.toString());
+		} catch (Exception e) {
+			e.printStackTrace();
+			return -1;
+		}
+	}
+}
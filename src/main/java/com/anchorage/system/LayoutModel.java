@@ -0,0 +1,402 @@
+package com.anchorage.system;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import com.anchorage.docks.stations.DockStation;
+
+import javafx.geometry.Orientation;
+
+/**
+ * Immutable tree of the layout of a station: splits, tab panes, substations
+ * and docks, with their identifiers, divider positions and orientation, plus
+ * the floating docks. It holds no reference to the scene graph, so once taken
+ * it can be read, compared or saved on any thread.
+ * <p>
+ * It is the copy of the layout every save goes through: asynchronous saves,
+ * the autosave, the journal snapshots and the perspectives all capture a
+ * model on the JavaFX thread and write it in background.
+ * {@link LayoutModelTracker} keeps an up to date model of a station.
+ */
+public final class LayoutModel {
+
+	public enum Kind {
+		SPLIT, TABS, SUBSTATION, DOCK, FLOATING
+	}
+
+	/**
+	 * Element of the layout model. Two elements are equal when their whole
+	 * subtrees are equal.
+	 */
+	public static final class Element {
+
+		private final Kind kind;
+		private final String id;
+		private final String name;
+		private final String contentType;
+		private final Orientation orientation;
+		private final double[] dividerPositions;
+		private final List<Element> children;
+		private final double x;
+		private final double y;
+		private final double width;
+		private final double height;
+		private int hash;
+
+		private Element(final Kind kind, final String id, final String name, final String contentType,
+				final Orientation orientation, final double[] dividerPositions, final List<Element> children,
+				final double x, final double y, final double width, final double height) {
+			this.kind = kind;
+			this.id = id;
+			this.name = name;
+			this.contentType = contentType;
+			this.orientation = orientation;
+			this.dividerPositions = dividerPositions;
+			this.children = children;
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+		}
+
+		public Kind getKind() {
+			return kind;
+		}
+
+		/**
+		 * @return the identifier of a dock or substation, or null
+		 */
+		public String getId() {
+			return id;
+		}
+
+		/**
+		 * @return the title of a dock or substation, or null
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the simple class name of the content of a dock, or null
+		 */
+		public String getContentType() {
+			return contentType;
+		}
+
+		/**
+		 * @return the orientation of a split, or null
+		 */
+		public Orientation getOrientation() {
+			return orientation;
+		}
+
+		/**
+		 * @return a copy of the divider positions of a split, empty for other
+		 *         elements
+		 */
+		public double[] getDividerPositions() {
+			return dividerPositions.clone();
+		}
+
+		/**
+		 * Get the children of the element. Tabs are in their order in the tab
+		 * pane, a substation has at most one child.
+		 *
+		 * @return an unmodifiable list of the children
+		 */
+		public List<Element> getChildren() {
+			return children;
+		}
+
+		public double getX() {
+			return x;
+		}
+
+		public double getY() {
+			return y;
+		}
+
+		public double getWidth() {
+			return width;
+		}
+
+		public double getHeight() {
+			return height;
+		}
+
+		private void accept(final LayoutVisitor visitor) {
+			switch (kind) {
+			case SPLIT:
+				visitor.startSplitter(orientation, dividerPositions.clone());
+				children.forEach(child -> child.accept(visitor));
+				visitor.end();
+				break;
+			case TABS:
+				// tabs are streamed in reverse order
+				visitor.startTabber();
+				for (int i = children.size() - 1; i >= 0; i--) {
+					children.get(i).accept(visitor);
+				}
+				visitor.end();
+				break;
+			case SUBSTATION:
+				visitor.startSubStation(id, name);
+				children.forEach(child -> child.accept(visitor));
+				visitor.end();
+				break;
+			case DOCK:
+				visitor.dockNode(id, name, contentType);
+				break;
+			case FLOATING:
+				visitor.floatingNode(id, name, x, y, width, height);
+				break;
+			default:
+				break;
+			}
+		}
+
+		private void collectDocks(final List<Element> docks) {
+			if (kind == Kind.DOCK || kind == Kind.SUBSTATION || kind == Kind.FLOATING) {
+				docks.add(this);
+			}
+			children.forEach(child -> child.collectDocks(docks));
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Element)) {
+				return false;
+			}
+			Element other = (Element) obj;
+			return kind == other.kind && Objects.equals(id, other.id) && Objects.equals(name, other.name)
+					&& Objects.equals(contentType, other.contentType) && orientation == other.orientation
+					&& Arrays.equals(dividerPositions, other.dividerPositions) && x == other.x && y == other.y
+					&& width == other.width && height == other.height && children.equals(other.children);
+		}
+
+		@Override
+		public int hashCode() {
+			// the element is immutable, its hash is computed once
+			if (hash == 0) {
+				hash = Objects.hash(kind, id, name, contentType, orientation, Arrays.hashCode(dividerPositions),
+						children, x, y, width, height);
+			}
+			return hash;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder(kind.name());
+			if (name != null) {
+				builder.append(" \"").append(name).append('"');
+			}
+			if (kind == Kind.SPLIT) {
+				builder.append(' ').append(orientation).append(' ').append(Arrays.toString(dividerPositions));
+			}
+			if (!children.isEmpty()) {
+				builder.append(' ').append(children);
+			}
+			return builder.toString();
+		}
+	}
+
+	private static final double[] NO_DIVIDERS = new double[0];
+
+	private final Element root;
+	private final List<Element> floating;
+	private final long journalSequence;
+
+	private LayoutModel(final Element root, final List<Element> floating, final long journalSequence) {
+		this.root = root;
+		this.floating = floating;
+		this.journalSequence = journalSequence;
+	}
+
+	/**
+	 * Takes the model of the layout of the station. Must be called on the
+	 * JavaFX thread.
+	 *
+	 * @param rootDockStation Root dock station
+	 * @return the model of the layout
+	 */
+	public static LayoutModel capture(final DockStation rootDockStation) {
+		Builder builder = new Builder();
+		AnchorageLayout.visitLayout(rootDockStation, builder);
+		return builder.build();
+	}
+
+	/**
+	 * @return the docked tree, or null if the station is empty
+	 */
+	public Element getRoot() {
+		return root;
+	}
+
+	/**
+	 * @return an unmodifiable list of the floating docks
+	 */
+	public List<Element> getFloating() {
+		return floating;
+	}
+
+	/**
+	 * Get the docks and substations of the layout, docked ones first in the
+	 * order of the tree, then the floating ones.
+	 *
+	 * @return the docks of the layout
+	 */
+	public List<Element> getDocks() {
+		List<Element> docks = new ArrayList<>();
+		if (root != null) {
+			root.collectDocks(docks);
+		}
+		docks.addAll(floating);
+		return docks;
+	}
+
+	/**
+	 * @param id identifier of a dock or substation
+	 * @return the element of the dock, or null if it is not in the layout
+	 */
+	public Element find(final String id) {
+		for (Element dock : getDocks()) {
+			if (dock.id != null && dock.id.equals(id)) {
+				return dock;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get the sequence number of the last {@link LayoutJournal} file whose
+	 * records are included in this layout.
+	 * 
+	 * @return the sequence number, or -1 if the layout is not journaled
+	 */
+	long getJournalSequence() {
+		return journalSequence;
+	}
+
+	LayoutModel withJournalSequence(final long sequence) {
+		return new LayoutModel(root, floating, sequence);
+	}
+
+	/**
+	 * Streams the model to a layout visitor, as the station it was taken from
+	 * would be.
+	 */
+	void accept(final LayoutVisitor visitor) {
+		if (root != null) {
+			root.accept(visitor);
+		}
+		floating.forEach(element -> element.accept(visitor));
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof LayoutModel)) {
+			return false;
+		}
+		LayoutModel other = (LayoutModel) obj;
+		// the journal sequence tells where the layout is saved, it is not part of it
+		return Objects.equals(root, other.root) && floating.equals(other.floating);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(root, floating);
+	}
+
+	@Override
+	public String toString() {
+		return "LayoutModel " + root + " floating " + floating;
+	}
+
+	/**
+	 * Reads a streamed layout into a model.
+	 */
+	static final class Builder implements LayoutVisitor {
+
+		private static final class Open {
+			private final Kind kind;
+			private final String id;
+			private final String name;
+			private final Orientation orientation;
+			private final double[] dividerPositions;
+			private final List<Element> children = new ArrayList<>();
+
+			private Open(Kind kind, String id, String name, Orientation orientation, double[] dividerPositions) {
+				this.kind = kind;
+				this.id = id;
+				this.name = name;
+				this.orientation = orientation;
+				this.dividerPositions = dividerPositions;
+			}
+		}
+
+		private final List<Open> open = new ArrayList<>();
+		private final List<Element> floating = new ArrayList<>();
+		private Element root;
+
+		private void add(final Element element) {
+			if (!open.isEmpty()) {
+				open.get(open.size() - 1).children.add(element);
+			} else if (root == null) {
+				root = element;
+			}
+		}
+
+		@Override
+		public void startSplitter(final Orientation orientation, final double[] dividerPositions) {
+			open.add(new Open(Kind.SPLIT, null, null, orientation, dividerPositions.clone()));
+		}
+
+		@Override
+		public void startTabber() {
+			open.add(new Open(Kind.TABS, null, null, null, NO_DIVIDERS));
+		}
+
+		@Override
+		public void startSubStation(final String id, final String name) {
+			open.add(new Open(Kind.SUBSTATION, id, name, null, NO_DIVIDERS));
+		}
+
+		@Override
+		public void end() {
+			Open element = open.remove(open.size() - 1);
+			if (element.kind == Kind.TABS) {
+				// tabs are streamed in reverse order
+				Collections.reverse(element.children);
+			}
+			add(new Element(element.kind, element.id, element.name, null, element.orientation,
+					element.dividerPositions, Collections.unmodifiableList(element.children), 0, 0, 0, 0));
+		}
+
+		@Override
+		public void dockNode(final String id, final String name, final String contentType) {
+			add(new Element(Kind.DOCK, id, name, contentType, null, NO_DIVIDERS, Collections.emptyList(), 0, 0, 0,
+					0));
+		}
+
+		@Override
+		public void floatingNode(final String id, final String name, final double x, final double y, final double width,
+				final double height) {
+			floating.add(new Element(Kind.FLOATING, id, name, null, null, NO_DIVIDERS, Collections.emptyList(), x,
+					y, width, height));
+		}
+
+		LayoutModel build() {
+			return new LayoutModel(root, Collections.unmodifiableList(new ArrayList<>(floating)), -1);
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package com.anchorage.system;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import com.anchorage.docks.stations.DockLayoutEvent;
+import com.anchorage.docks.stations.DockStation;
+import com.anchorage.docks.stations.interfaces.DockLayoutListener;
+
+import javafx.application.Platform;
+
+/**
+ * Keeps a {@link LayoutModel} of a station in sync with its containers. Every
+ * change of the layout schedules a new model, taken once per pulse however
+ * many changes it holds. The last model is published for any thread to read.
+ * <p>
+ * Moving or resizing a floating stage is not a change of the layout: the
+ * bounds of the floating docks are the ones of the last change. Neither are
+ * maximizing or restoring a dock and selecting a tab.
+ */
+public final class LayoutModelTracker {
+
+	private final DockStation station;
+	private final DockLayoutListener layoutListener;
+	private final List<Consumer<LayoutModel>> modelListeners = new CopyOnWriteArrayList<>();
+
+	private volatile LayoutModel model;
+	private boolean started;
+	private boolean updateScheduled;
+
+	/**
+	 * Creates a tracker of the station. It does nothing until {@link #start()}
+	 * is called.
+	 * 
+	 * @param station Root dock station
+	 */
+	public LayoutModelTracker(final DockStation station) {
+		this.station = station;
+		this.layoutListener = this::layoutChanged;
+	}
+
+	/**
+	 * Takes the model of the station and starts listening to the changes of
+	 * its layout. Must be called on the JavaFX thread.
+	 */
+	public void start() {
+		if (!started) {
+			station.addLayoutListener(layoutListener);
+			started = true;
+			update();
+		}
+	}
+
+	public void stop() {
+		if (started) {
+			station.removeLayoutListener(layoutListener);
+			started = false;
+		}
+	}
+
+	public boolean isStarted() {
+		return started;
+	}
+
+	/**
+	 * Get the last model of the layout. It can be called on any thread.
+	 * 
+	 * @return the model, or null if the tracker has never been started
+	 */
+	public LayoutModel getModel() {
+		return model;
+	}
+
+	/**
+	 * Adds a listener called on the JavaFX thread with every new model that
+	 * differs from the previous one.
+	 * 
+	 * @param listener receiver of the models
+	 */
+	public void addModelListener(final Consumer<LayoutModel> listener) {
+		modelListeners.add(listener);
+	}
+
+	public void removeModelListener(final Consumer<LayoutModel> listener) {
+		modelListeners.remove(listener);
+	}
+
+	/**
+	 * Takes the model right away, without waiting for the next pulse. Must be
+	 * called on the JavaFX thread.
+	 * 
+	 * @return the new model
+	 */
+	public LayoutModel update() {
+		updateScheduled = false;
+		LayoutModel newModel = LayoutModel.capture(station);
+		if (!newModel.equals(model)) {
+			model = newModel;
+			for (Consumer<LayoutModel> listener : modelListeners) {
+				listener.accept(newModel);
+			}
+		}
+		return model;
+	}
+
+	private void layoutChanged(final DockLayoutEvent event) {
+		if (!isLayoutChange(event)) {
+			return;
+		}
+		if (!updateScheduled) {
+			updateScheduled = true;
+			Platform.runLater(() -> {
+				if (started && updateScheduled) {
+					update();
+				}
+			});
+		}
+	}
+
+	/**
+	 * @return false for the events that leave the saved layout unchanged:
+	 *         maximizing shows a single dock in place of the layout, and the
+	 *         selected tabs are not saved
+	 */
+	static boolean isLayoutChange(final DockLayoutEvent event) {
+		switch (event.getType()) {
+		case MAXIMIZED:
+		case RESTORED:
+		case TAB_SELECTED:
+			return false;
+		default:
+			return true;
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package com.anchorage.system;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.anchorage.docks.containers.interfaces.DockContainableComponent;
+import com.anchorage.docks.containers.interfaces.DockContainer;
+import com.anchorage.docks.containers.subcontainers.DockSplitterContainer;
+import com.anchorage.docks.containers.subcontainers.DockTabberContainer;
+import com.anchorage.docks.node.DockNode;
+import com.anchorage.docks.stations.DockLayoutEvent;
+import com.anchorage.docks.stations.DockStation;
+import com.anchorage.docks.stations.DockSubStation;
+
+import javafx.scene.Node;
+import javafx.scene.control.Tab;
+import javafx.scene.layout.BorderPane;
+
+/**
+ * Removes the redundant containers of a station, bottom-up: the items of a
+ * splitter nested in a splitter of the same orientation are moved into the
+ * outer one, with their dividers scaled to the space the nested splitter had,
+ * and splitters or tab panes holding a single item are replaced by the item.
+ * The docks keep the same place and size on screen.
+ */
+final class LayoutNormalizer {
+
+	private final DockStation station;
+	private int changes;
+
+	LayoutNormalizer(final DockStation station) {
+		this.station = station;
+	}
+
+	/**
+	 * @return the number of containers removed
+	 */
+	int normalize() {
+		if (hasMaximizedNode(station)) {
+			return 0;
+		}
+		normalizeStation(station);
+		if (changes > 0) {
+			// Set parent containers (important for docking to function)
+			AnchorageLayout.setAllParentContainers(station);
+			station.fireLayoutChanged(DockLayoutEvent.Type.NORMALIZED, null);
+		}
+		return changes;
+	}
+
+	private static boolean hasMaximizedNode(final DockStation dockStation) {
+		for (DockNode dockNode : dockStation.getDockNodes()) {
+			if (dockNode.maximizingProperty().get()
+					|| (dockNode instanceof DockSubStation && hasMaximizedNode(((DockSubStation) dockNode).getSubStation()))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void normalizeStation(final DockStation dockStation) {
+		for (Node child : new ArrayList<>(dockStation.getChildren())) {
+			if (child instanceof DockContainableComponent) {
+				normalizeNode(child);
+				return;
+			}
+		}
+	}
+
+	private void normalizeNode(final Node node) {
+		if (node instanceof DockSubStation) {
+			normalizeStation(((DockSubStation) node).getSubStation());
+		} else if (node instanceof DockSplitterContainer) {
+			DockSplitterContainer splitter = (DockSplitterContainer) node;
+			for (Node item : new ArrayList<>(splitter.getItems())) {
+				normalizeNode(item);
+			}
+			for (Node item : new ArrayList<>(splitter.getItems())) {
+				if (item instanceof DockSplitterContainer
+						&& ((DockSplitterContainer) item).getOrientation() == splitter.getOrientation()) {
+					merge(splitter, (DockSplitterContainer) item);
+				}
+			}
+			if (splitter.getItems().size() == 1 && splitter.getParentContainer() != null) {
+				Node item = splitter.getItems().get(0);
+				removeItem(splitter, item);
+				replace(splitter, item);
+			}
+		} else if (node instanceof DockTabberContainer) {
+			DockTabberContainer tabber = (DockTabberContainer) node;
+			if (tabber.getTabs().size() == 1 && tabber.getParentContainer() != null) {
+				Tab tab = tabber.getTabs().get(0);
+				Node content = tab.getContent();
+				tabber.getTabs().remove(tab);
+				tab.setContent(null);
+				replace(tabber, content);
+			}
+		}
+	}
+
+	/**
+	 * Moves the items of the inner splitter into the outer one, in its place.
+	 */
+	private void merge(final DockSplitterContainer outer, final DockSplitterContainer inner) {
+		int index = outer.getItems().indexOf(inner);
+		double[] outerPositions = outer.getDividerPositions();
+		double[] innerPositions = inner.getDividerPositions();
+		double start = (index == 0) ? 0 : outerPositions[index - 1];
+		double end = (index == outerPositions.length) ? 1 : outerPositions[index];
+
+		double[] positions = new double[outerPositions.length + innerPositions.length];
+		System.arraycopy(outerPositions, 0, positions, 0, index);
+		for (int i = 0; i < innerPositions.length; i++) {
+			positions[index + i] = start + (end - start) * innerPositions[i];
+		}
+		System.arraycopy(outerPositions, index, positions, index + innerPositions.length,
+				outerPositions.length - index);
+
+		List<Node> items = new ArrayList<>(inner.getItems());
+		for (Node item : items) {
+			removeItem(inner, item);
+		}
+		outer.getItems().remove(index);
+		inner.setParentContainer(null);
+		for (Node item : items) {
+			((DockContainableComponent) item).setParentContainer(outer);
+		}
+		outer.getItems().addAll(index, items);
+		outer.setDividerPositions(positions);
+		changes++;
+	}
+
+	private static void removeItem(final DockSplitterContainer splitter, final Node item) {
+		splitter.getItems().remove(item);
+		// WORKAROUND for bug on split panel. After getItems().remove(node) the parent of node is not set to null
+		BorderPane workAroundPane = new BorderPane(item);
+		workAroundPane.getChildren().remove(item);
+	}
+
+	/**
+	 * Puts the node in the place of the container, in the parent of the
+	 * container.
+	 */
+	private void replace(final Node container, final Node node) {
+		DockContainer parent = ((DockContainableComponent) container).getParentContainer();
+		int index = parent.indexOf(container);
+		parent.insertNode(node, index);
+		parent.removeNode(container);
+		((DockContainableComponent) container).setParentContainer(null);
+		changes++;
+	}
+}
@@ -0,0 +1,451 @@
+package com.anchorage.system;
+
+import static com.anchorage.docks.containers.common.AnchorageSettings.FLOATING_NODE_DROPSHADOW_RADIUS;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.anchorage.docks.containers.StageFloatable;
+import com.anchorage.docks.containers.common.DockCommons;
+import com.anchorage.docks.containers.interfaces.DockContainableComponent;
+import com.anchorage.docks.containers.interfaces.DockContainer;
+import com.anchorage.docks.containers.subcontainers.DockSplitterContainer;
+import com.anchorage.docks.containers.subcontainers.DockTabberContainer;
+import com.anchorage.docks.node.DockNode;
+import com.anchorage.docks.stations.DockLayoutEvent;
+import com.anchorage.docks.stations.DockStation;
+import com.anchorage.docks.stations.DockSubStation;
+
+import javafx.scene.Node;
+import javafx.scene.control.Tab;
+import javafx.scene.layout.BorderPane;
+
+/**
+ * Brings the live layout of a station to a saved layout with as few changes
+ * as possible. Splitters and tab panes of the live layout holding the same
+ * docks, arranged the same way, as a part of the saved layout are kept as
+ * they are, wherever they move in the tree; only the containers around them
+ * are created again, and the docks are moved into them without being undocked.
+ */
+final class LayoutReconciler {
+
+	private final DockStation station;
+	private final Map<DockNode, Integer> numbers = new IdentityHashMap<>();
+	private final Map<LayoutElement, DockNode> resolved = new IdentityHashMap<>();
+	private final Map<LayoutElement, String> signatures = new IdentityHashMap<>();
+	private final Map<String, Node> liveContainers = new HashMap<>();
+	private final Map<DockNode, DockStation> placed = new IdentityHashMap<>();
+	private final Map<LayoutElement, Node> skeletons;
+	private int changes;
+
+	LayoutReconciler(final DockStation station) {
+		this(station, null);
+	}
+
+	/**
+	 * @param station the station to reconcile
+	 * @param skeletons empty containers built ahead for the elements of the
+	 *            saved layout, filled instead of creating new ones; may be null
+	 */
+	LayoutReconciler(final DockStation station, final Map<LayoutElement, Node> skeletons) {
+		this.station = station;
+		this.skeletons = skeletons;
+	}
+
+	/**
+	 * @param root the saved docked tree
+	 * @param floating the saved floating nodes
+	 * @return false if the layout had no docked tree
+	 */
+	boolean reconcile(final LayoutElement root, final List<LayoutElement> floating) {
+		if (root == null) {
+			return false;
+		}
+		Set<DockNode> liveNodes = collectLiveNodes();
+		DockNodeIndex dockNodeIndex = new DockNodeIndex(new ArrayList<>(liveNodes));
+		resolve(root, dockNodeIndex);
+		for (LayoutElement element : floating) {
+			resolved.put(element, dockNodeIndex.take(element.id, element.name));
+		}
+		apply(root, floating, liveNodes);
+		return true;
+	}
+
+	/**
+	 * Reconciles the station with a layout whose docks are already known.
+	 * 
+	 * @param root the docked tree, or null to empty the station
+	 * @param floating the floating nodes
+	 * @param dockNodes the docks of the elements of the layout
+	 */
+	void reconcile(final LayoutElement root, final List<LayoutElement> floating,
+			final Map<LayoutElement, DockNode> dockNodes) {
+		Set<DockNode> liveNodes = collectLiveNodes();
+		resolved.putAll(dockNodes);
+		apply(root, floating, liveNodes);
+	}
+
+	private Set<DockNode> collectLiveNodes() {
+		Set<DockNode> liveNodes = new LinkedHashSet<>();
+		collectDockNodes(station, liveNodes);
+		for (DockNode dockNode : liveNodes) {
+			if (dockNode.maximizingProperty().get()) {
+				dockNode.restoreLayout();
+			}
+		}
+		return liveNodes;
+	}
+
+	private void apply(final LayoutElement root, final List<LayoutElement> floating, final Set<DockNode> liveNodes) {
+		Node liveRoot = station.getChildren().isEmpty() ? null : station.getChildren().get(0);
+		if (liveRoot != null) {
+			signLive(liveRoot);
+		}
+		setStationRoot(station, (root != null) ? build(root, station) : null);
+
+		for (LayoutElement element : floating) {
+			placeFloating(element);
+		}
+		for (DockNode dockNode : liveNodes) {
+			if (!placed.containsKey(dockNode) && dockNode.stationProperty().get() != null) {
+				removeFromLayout(dockNode);
+			}
+		}
+		for (Map.Entry<DockNode, DockStation> entry : placed.entrySet()) {
+			register(entry.getKey(), entry.getValue());
+		}
+
+		// Set parent containers (important for docking to function)
+		AnchorageLayout.setAllParentContainers(station);
+		if (changes > 0) {
+			station.fireLayoutChanged(DockLayoutEvent.Type.REARRANGED, null);
+		}
+	}
+
+	private static void collectDockNodes(final DockStation dockStation, final Set<DockNode> nodes) {
+		// the list of a station holds its floating docks too; a floating dock whose stage is gone is not live
+		for (DockNode dockNode : dockStation.getDockNodes()) {
+			if (dockNode.floatingProperty().get() && dockNode.getFloatableStage() == null) {
+				continue;
+			}
+			nodes.add(dockNode);
+			if (dockNode instanceof DockSubStation) {
+				collectDockNodes(((DockSubStation) dockNode).getSubStation(), nodes);
+			}
+		}
+	}
+
+	private void resolve(final LayoutElement element, final DockNodeIndex dockNodeIndex) {
+		if (element.kind == LayoutElement.Kind.NODE || element.kind == LayoutElement.Kind.SUBSTATION) {
+			DockNode dockNode = dockNodeIndex.take(element.id, element.name);
+			if (element.kind == LayoutElement.Kind.SUBSTATION && !(dockNode instanceof DockSubStation)) {
+				dockNode = null;
+			}
+			resolved.put(element, dockNode);
+		}
+		for (LayoutElement child : element.children) {
+			resolve(child, dockNodeIndex);
+		}
+	}
+
+	/////////////////////////////
+	// Signatures
+	////////////////////////////
+
+	private String number(final DockNode dockNode) {
+		return Integer.toString(numbers.computeIfAbsent(dockNode, key -> numbers.size()));
+	}
+
+	/**
+	 * Get the signature of a saved element: its containers and docks, without
+	 * the divider positions. It is null if a dock of the element is missing.
+	 */
+	private String signature(final LayoutElement element) {
+		if (signatures.containsKey(element)) {
+			return signatures.get(element);
+		}
+		String signature;
+		switch (element.kind) {
+		case NODE:
+			DockNode dockNode = resolved.get(element);
+			signature = (dockNode != null) ? "N" + number(dockNode) : null;
+			break;
+		case SUBSTATION:
+			DockNode subStation = resolved.get(element);
+			String content = element.children.isEmpty() ? "" : signature(element.children.get(0));
+			signature = (subStation != null && content != null) ? "U" + number(subStation) + "(" + content + ")"
+					: null;
+			break;
+		default:
+			StringBuilder builder = new StringBuilder(element.kind == LayoutElement.Kind.SPLITTER
+					? "S" + element.orientation.ordinal() + "(" : "T(");
+			for (LayoutElement child : element.children) {
+				String childSignature = signature(child);
+				if (childSignature == null) {
+					signatures.put(element, null);
+					return null;
+				}
+				builder.append(childSignature).append(',');
+			}
+			signature = builder.append(')').toString();
+			break;
+		}
+		signatures.put(element, signature);
+		return signature;
+	}
+
+	/**
+	 * Computes the signatures of the live containers, as
+	 * {@link #signature(LayoutElement)} does for the saved ones.
+	 */
+	private String signLive(final Node node) {
+		if (node instanceof DockSubStation) {
+			DockStation subStation = ((DockSubStation) node).getSubStation();
+			String content = subStation.getChildren().isEmpty() ? "" : signLive(subStation.getChildren().get(0));
+			return "U" + number((DockNode) node) + "(" + content + ")";
+		} else if (node instanceof DockNode) {
+			return "N" + number((DockNode) node);
+		}
+		List<Node> children = childrenOf(node);
+		if (children == null) {
+			return "?";
+		}
+		StringBuilder builder = new StringBuilder(node instanceof DockSplitterContainer
+				? "S" + ((DockSplitterContainer) node).getOrientation().ordinal() + "(" : "T(");
+		for (Node child : children) {
+			builder.append(signLive(child)).append(',');
+		}
+		String signature = builder.append(')').toString();
+		liveContainers.putIfAbsent(signature, node);
+		return signature;
+	}
+
+	private static List<Node> childrenOf(final Node node) {
+		if (node instanceof DockSplitterContainer) {
+			return new ArrayList<>(((DockSplitterContainer) node).getItems());
+		} else if (node instanceof DockTabberContainer) {
+			List<Node> children = new ArrayList<>();
+			for (Tab tab : ((DockTabberContainer) node).getTabs()) {
+				children.add(tab.getContent());
+			}
+			return children;
+		}
+		return null;
+	}
+
+	/////////////////////////////
+	// Reconciliation
+	////////////////////////////
+
+	private Node build(final LayoutElement element, final DockStation targetStation) {
+		switch (element.kind) {
+		case NODE: {
+			DockNode dockNode = resolved.get(element);
+			if (dockNode == null) {
+				return null;
+			}
+			if (dockNode.floatingProperty().get()) {
+				dockNode.undock();
+				changes++;
+			}
+			placed.put(dockNode, targetStation);
+			return dockNode;
+		}
+		case SUBSTATION: {
+			DockSubStation subStation = (DockSubStation) resolved.get(element);
+			if (subStation == null) {
+				subStation = AnchorageSystem.createSubStation(targetStation, element.name);
+				if (element.id != null) {
+					subStation.setDockId(element.id);
+				}
+				changes++;
+			}
+			Node content = element.children.isEmpty() ? null
+					: build(element.children.get(0), subStation.getSubStation());
+			setStationRoot(subStation.getSubStation(), content);
+			placed.put(subStation, targetStation);
+			return subStation;
+		}
+		default:
+			break;
+		}
+
+		String signature = signature(element);
+		Node live = (signature != null) ? liveContainers.remove(signature) : null;
+		if (live != null) {
+			keep(element, live, targetStation);
+			return live;
+		}
+
+		List<Node> children = new ArrayList<>();
+		for (LayoutElement child : element.children) {
+			Node node = build(child, targetStation);
+			if (node != null) {
+				children.add(node);
+			}
+		}
+		changes++;
+		if (element.kind == LayoutElement.Kind.SPLITTER && children.size() < 2) {
+			return children.isEmpty() ? null : children.get(0);
+		}
+		for (Node child : children) {
+			detach(child);
+		}
+		Node skeleton = (skeletons != null) ? skeletons.remove(element) : null;
+		if (element.kind == LayoutElement.Kind.SPLITTER) {
+			double[] dividerPositions = LayoutRestorer.completeDividerPositions(element.dividerPositions,
+					children.size());
+			if (skeleton instanceof DockSplitterContainer) {
+				return fillSplitter((DockSplitterContainer) skeleton, children, dividerPositions);
+			}
+			return DockCommons.createSplitter(children, element.orientation, dividerPositions);
+		}
+		if (skeleton instanceof DockTabberContainer) {
+			return fillTabber((DockTabberContainer) skeleton, children);
+		}
+		return DockCommons.createTabber(children);
+	}
+
+	private static Node fillSplitter(final DockSplitterContainer splitter, final List<Node> children,
+			final double[] dividerPositions) {
+		for (Node child : children) {
+			((DockContainableComponent) child).setParentContainer(splitter);
+		}
+		splitter.getItems().addAll(children);
+		splitter.setDividerPositions(dividerPositions);
+		return splitter;
+	}
+
+	private static Node fillTabber(final DockTabberContainer tabber, final List<Node> children) {
+		for (Node child : children) {
+			if (child instanceof DockNode) {
+				tabber.addAsTab((DockNode) child);
+				((DockNode) child).ensureVisibility();
+			}
+		}
+		return tabber.getTabs().isEmpty() ? null : tabber;
+	}
+
+	/**
+	 * Keeps a live container matching a saved element, only moving its
+	 * dividers to the saved positions.
+	 */
+	private void keep(final LayoutElement element, final Node live, final DockStation targetStation) {
+		if (live instanceof DockSubStation) {
+			DockSubStation subStation = (DockSubStation) live;
+			placed.put(subStation, targetStation);
+			DockStation inner = subStation.getSubStation();
+			if (!element.children.isEmpty() && !inner.getChildren().isEmpty()) {
+				keep(element.children.get(0), inner.getChildren().get(0), inner);
+			}
+			return;
+		} else if (live instanceof DockNode) {
+			placed.put((DockNode) live, targetStation);
+			return;
+		}
+		if (live instanceof DockSplitterContainer && element.dividerPositions != null) {
+			DockSplitterContainer splitter = (DockSplitterContainer) live;
+			double[] positions = splitter.getDividerPositions();
+			if (positions.length == element.dividerPositions.length
+					&& !Arrays.equals(positions, element.dividerPositions)) {
+				splitter.setDividerPositions(element.dividerPositions);
+				changes++;
+			}
+		}
+		List<Node> children = childrenOf(live);
+		for (int i = 0; i < children.size() && i < element.children.size(); i++) {
+			keep(element.children.get(i), children.get(i), targetStation);
+		}
+	}
+
+	private void setStationRoot(final DockStation dockStation, final Node root) {
+		Node current = dockStation.getChildren().isEmpty() ? null : dockStation.getChildren().get(0);
+		if (current == root) {
+			return;
+		}
+		if (root != null) {
+			detach(root);
+		}
+		if (current != null) {
+			dockStation.getChildren().remove(current);
+		}
+		if (root != null) {
+			dockStation.getChildren().add(0, root);
+		}
+		changes++;
+	}
+
+	/**
+	 * Takes the node out of its live container, without the reorganization of
+	 * the containers made by undocking.
+	 */
+	private static void detach(final Node node) {
+		DockContainer parent = ((DockContainableComponent) node).getParentContainer();
+		if (parent instanceof DockSplitterContainer) {
+			((DockSplitterContainer) parent).getItems().remove(node);
+			// WORKAROUND for bug on split panel. After getItems().remove(node) the parent of node is not set to null
+			BorderPane workAroundPane = new BorderPane(node);
+			workAroundPane.getChildren().remove(node);
+		} else if (parent instanceof DockTabberContainer) {
+			for (Tab tab : ((DockTabberContainer) parent).getTabs()) {
+				if (tab.getContent() == node) {
+					((DockTabberContainer) parent).getTabs().remove(tab);
+					tab.setContent(null);
+					break;
+				}
+			}
+		}
+		if (node.getParent() instanceof DockStation) {
+			((DockStation) node.getParent()).getChildren().remove(node);
+		}
+		((DockContainableComponent) node).setParentContainer(null);
+	}
+
+	private void placeFloating(final LayoutElement element) {
+		DockNode dockNode = resolved.get(element);
+		if (dockNode == null) {
+			return;
+		}
+		placed.put(dockNode, station);
+		StageFloatable stage = dockNode.getFloatableStage();
+		if (dockNode.floatingProperty().get() && stage != null) {
+			stage.setX(element.x - FLOATING_NODE_DROPSHADOW_RADIUS);
+			stage.setY(element.y - FLOATING_NODE_DROPSHADOW_RADIUS);
+			stage.setWidth(element.width);
+			stage.setHeight(element.height);
+			return;
+		}
+		if (dockNode.stationProperty().get() != null) {
+			detach(dockNode);
+			dockNode.stationProperty().get().remove(dockNode);
+		}
+		dockNode.dockAsFloating(station.getStationWindow(), station, element.x, element.y, element.width,
+				element.height);
+		changes++;
+	}
+
+	private void removeFromLayout(final DockNode dockNode) {
+		if (dockNode.floatingProperty().get()) {
+			dockNode.undock();
+		} else {
+			detach(dockNode);
+			dockNode.stationProperty().get().remove(dockNode);
+		}
+		changes++;
+	}
+
+	private static void register(final DockNode dockNode, final DockStation dockStation) {
+		DockStation current = dockNode.stationProperty().get();
+		if (current != dockStation && current != null) {
+			current.getDockNodes().remove(dockNode);
+		}
+		dockStation.add(dockNode);
+		dockNode.stationProperty().set(dockStation);
+	}
+}
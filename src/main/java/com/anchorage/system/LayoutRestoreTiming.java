@@ -0,0 +1,197 @@
+package com.anchorage.system;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.anchorage.docks.node.DockNode;
+import com.anchorage.docks.stations.DockStation;
+import com.anchorage.docks.stations.DockSubStation;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.value.ChangeListener;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+
+/**
+ * Timings of a layout restore: the time spent in each phase of the restore,
+ * then the number of pulses the scene takes to lay the restored layout out.
+ * <p>
+ * From the start of the restore until the layout settled, it also counts the
+ * times the docks of the station entered or left a scene, each of which costs
+ * a CSS pass over the dock, and the layout passes of the station. A restore
+ * undocking the docks one by one moves the remaining ones in and out of the
+ * scene as their containers collapse, where a restore detaching the whole
+ * tree moves each dock out once and in once.
+ */
+public final class LayoutRestoreTiming {
+
+	private static final int MAX_PULSES = 120;
+
+	private long startTime;
+	private long detachNanos;
+	private long buildNanos;
+	private long attachNanos;
+	private long floatingNanos;
+	private long lastMark;
+	private int floatingStages;
+	private int pulses = -1;
+	private int sceneChanges;
+	private int layoutPasses;
+	private Runnable onSettled;
+
+	private DockStation station;
+	private final List<Node> watchedNodes = new ArrayList<>();
+	private final ChangeListener<Scene> sceneListener = (observable, oldScene, newScene) -> sceneChanges++;
+	private final ChangeListener<Boolean> layoutListener = (observable, oldValue, needsLayout) -> {
+		if (!needsLayout) {
+			layoutPasses++;
+		}
+	};
+
+	void start(final DockStation dockStation) {
+		station = dockStation;
+		station.needsLayoutProperty().addListener(layoutListener);
+		watchDocks(dockStation);
+		startTime = System.nanoTime();
+		lastMark = startTime;
+	}
+
+	private void watchDocks(final DockStation dockStation) {
+		for (DockNode dockNode : dockStation.getDockNodes()) {
+			dockNode.sceneProperty().addListener(sceneListener);
+			watchedNodes.add(dockNode);
+			if (dockNode instanceof DockSubStation) {
+				watchDocks(((DockSubStation) dockNode).getSubStation());
+			}
+		}
+	}
+
+	/**
+	 * Stops the timing of a restore that failed.
+	 */
+	void cancel() {
+		unwatch();
+	}
+
+	private void unwatch() {
+		station.needsLayoutProperty().removeListener(layoutListener);
+		for (Node node : watchedNodes) {
+			node.sceneProperty().removeListener(sceneListener);
+		}
+		watchedNodes.clear();
+	}
+
+	private long lap() {
+		long now = System.nanoTime();
+		long lap = now - lastMark;
+		lastMark = now;
+		return lap;
+	}
+
+	void detached() {
+		detachNanos = lap();
+	}
+
+	void built() {
+		buildNanos = lap();
+	}
+
+	void attached() {
+		attachNanos = lap();
+	}
+
+	void floatingShown(final int stages) {
+		floatingNanos = lap();
+		floatingStages = stages;
+	}
+
+	/**
+	 * Counts the pulses until the station does not need layout anymore.
+	 */
+	void countPulses() {
+		new AnimationTimer() {
+			@Override
+			public void handle(final long now) {
+				pulses++;
+				if (pulses > 0 && (!station.isNeedsLayout() || pulses >= MAX_PULSES)) {
+					stop();
+					unwatch();
+					if (onSettled != null) {
+						onSettled.run();
+					}
+				}
+			}
+		}.start();
+	}
+
+	public long getDetachNanos() {
+		return detachNanos;
+	}
+
+	public long getBuildNanos() {
+		return buildNanos;
+	}
+
+	public long getAttachNanos() {
+		return attachNanos;
+	}
+
+	public long getFloatingNanos() {
+		return floatingNanos;
+	}
+
+	public long getTotalNanos() {
+		return lastMark - startTime;
+	}
+
+	public int getFloatingStages() {
+		return floatingStages;
+	}
+
+	/**
+	 * Get the number of pulses after the restore until the layout settled.
+	 * 
+	 * @return the number of pulses, or -1 until the layout settled
+	 */
+	public int getPulses() {
+		return pulses;
+	}
+
+	/**
+	 * Get the number of times the docks entered or left a scene, from the start
+	 * of the restore until the layout settled.
+	 * 
+	 * @return the number of scene changes
+	 */
+	public int getSceneChanges() {
+		return sceneChanges;
+	}
+
+	/**
+	 * Get the number of layout passes of the station, from the start of the
+	 * restore until the layout settled.
+	 * 
+	 * @return the number of layout passes
+	 */
+	public int getLayoutPasses() {
+		return layoutPasses;
+	}
+
+	/**
+	 * Sets the action run once the restored layout settled.
+	 * 
+	 * @param onSettled the action
+	 */
+	public void setOnSettled(final Runnable onSettled) {
+		this.onSettled = onSettled;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"detach %.2f ms, build %.2f ms, attach %.2f ms, %d floating %.2f ms, total %.2f ms, %d pulses, "
+						+ "%d scene changes, %d layout passes",
+				detachNanos / 1e6, buildNanos / 1e6, attachNanos / 1e6, floatingStages, floatingNanos / 1e6,
+				getTotalNanos() / 1e6, pulses, sceneChanges, layoutPasses);
+	}
+}
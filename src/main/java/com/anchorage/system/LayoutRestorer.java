@@ -0,0 +1,225 @@
+package com.anchorage.system;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import com.anchorage.docks.containers.common.DockCommons;
+import com.anchorage.docks.node.DockNode;
+import com.anchorage.docks.stations.DockLayoutEvent;
+import com.anchorage.docks.stations.DockStation;
+import com.anchorage.docks.stations.DockSubStation;
+
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+
+/**
+ * Builds the containers of a station from a streamed layout. Each started
+ * element collects its children until it ends, so the tree is built in a
+ * single pass over the layout, bottom-up, detached from the scene. The docked
+ * tree is attached to the station once the whole layout has been streamed,
+ * then the floating stages are shown together.
+ */
+class LayoutRestorer implements LayoutVisitor {
+
+	private enum ElementType {
+		SPLITTER, TABBER, SUBSTATION
+	}
+
+	private static final class Element {
+		private final ElementType type;
+		private final DockStation station;
+		private final List<Node> children = new ArrayList<>();
+		private Orientation orientation;
+		private double[] dividerPositions;
+		private DockSubStation subStation;
+
+		private Element(ElementType type, DockStation station) {
+			this.type = type;
+			this.station = station;
+		}
+	}
+
+	private static final class FloatingElement {
+		private final DockNode dockNode;
+		private final double width;
+		private final double height;
+
+		private FloatingElement(DockNode dockNode, double width, double height) {
+			this.dockNode = dockNode;
+			this.width = width;
+			this.height = height;
+		}
+	}
+
+	private final DockStation dockStation;
+	private final DockNodeIndex dockNodeIndex;
+	private final LayoutRestoreTiming timing;
+	private final Deque<Element> elements = new ArrayDeque<>();
+	private final List<FloatingElement> floatingElements = new ArrayList<>();
+	private Node root;
+
+	LayoutRestorer(final DockStation dockStation, final List<DockNode> dockNodeList) {
+		this(dockStation, dockNodeList, null);
+	}
+
+	LayoutRestorer(final DockStation dockStation, final List<DockNode> dockNodeList,
+			final LayoutRestoreTiming timing) {
+		this.dockStation = dockStation;
+		this.dockNodeIndex = new DockNodeIndex(dockNodeList);
+		this.timing = timing;
+	}
+
+	private DockStation currentStation() {
+		return elements.isEmpty() ? dockStation : elements.peek().station;
+	}
+
+	private void addNode(final Node node) {
+		if (node == null) {
+			return;
+		}
+		if (!elements.isEmpty()) {
+			elements.peek().children.add(node);
+		} else if (root == null) {
+			root = node;
+		}
+	}
+
+	@Override
+	public void startSplitter(final Orientation orientation, final double[] dividerPositions) {
+		Element element = new Element(ElementType.SPLITTER, currentStation());
+		element.orientation = orientation;
+		element.dividerPositions = dividerPositions;
+		elements.push(element);
+	}
+
+	@Override
+	public void startTabber() {
+		elements.push(new Element(ElementType.TABBER, currentStation()));
+	}
+
+	@Override
+	public void startSubStation(final String id, final String name) {
+		DockStation parentStation = currentStation();
+		DockSubStation subStation = AnchorageSystem.createSubStation(parentStation, name);
+		if (id != null) {
+			subStation.setDockId(id);
+		}
+		subStation.stationProperty().set(parentStation);
+		parentStation.add(subStation);
+
+		Element element = new Element(ElementType.SUBSTATION, subStation.getSubStation());
+		element.subStation = subStation;
+		elements.push(element);
+	}
+
+	@Override
+	public void end() {
+		Element element = elements.pop();
+		switch (element.type) {
+		case SPLITTER:
+			addNode(buildSplitter(element));
+			break;
+		case TABBER:
+			// tabs are streamed in reverse order
+			Collections.reverse(element.children);
+			addNode(DockCommons.createTabber(element.children));
+			break;
+		case SUBSTATION:
+			// A SubStation can only contain one following child element
+			if (!element.children.isEmpty()) {
+				element.station.getChildren().add(element.children.get(0));
+			}
+			addNode(element.subStation);
+			break;
+		default:
+			break;
+		}
+	}
+
+	private Node buildSplitter(final Element element) {
+		return createSplitter(element.children, element.orientation, element.dividerPositions);
+	}
+
+	/**
+	 * Creates a splitter of the restored children. A splitter left with a
+	 * single child is replaced by the child, and missing divider positions
+	 * share the space evenly.
+	 * 
+	 * @return the splitter, the only child, or null without children
+	 */
+	static Node createSplitter(final List<Node> children, final Orientation orientation,
+			final double[] dividerPositions) {
+		if (children.size() < 2) {
+			return children.isEmpty() ? null : children.get(0);
+		}
+		return DockCommons.createSplitter(children, orientation,
+				completeDividerPositions(dividerPositions, children.size()));
+	}
+
+	static double[] completeDividerPositions(final double[] dividerPositions, final int items) {
+		if (dividerPositions != null && dividerPositions.length == items - 1) {
+			return dividerPositions;
+		}
+		double[] positions = new double[items - 1];
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = (double) (i + 1) / items;
+		}
+		return positions;
+	}
+
+	@Override
+	public void dockNode(final String id, final String name, final String contentType) {
+		DockNode dockNode = dockNodeIndex.take(id, name);
+		if (dockNode != null) {
+			DockStation station = currentStation();
+			station.add(dockNode);
+			dockNode.stationProperty().set(station);
+		}
+		addNode(dockNode);
+	}
+
+	@Override
+	public void floatingNode(final String id, final String name, final double x, final double y, final double width,
+			final double height) {
+		DockNode dockNode = dockNodeIndex.take(id, name);
+		if (dockNode != null) {
+			dockNode.dockAsFloating(dockStation.getStationWindow(), dockStation, x, y, width, height, false);
+			floatingElements.add(new FloatingElement(dockNode, width, height));
+		}
+	}
+
+	/**
+	 * Completes the restore once the whole layout has been streamed.
+	 * 
+	 * @return false if the layout had no docked tree
+	 */
+	boolean finish() {
+		if (timing != null) {
+			timing.built();
+		}
+		if (root != null) {
+			dockStation.getChildren().add(root);
+			// Set parent containers (important for docking to function)
+			AnchorageLayout.setAllParentContainers(dockStation);
+		}
+		if (timing != null) {
+			timing.attached();
+		}
+
+		for (FloatingElement floatingElement : floatingElements) {
+			floatingElement.dockNode.showFloatingStage(floatingElement.width, floatingElement.height);
+		}
+		if (timing != null) {
+			timing.floatingShown(floatingElements.size());
+			timing.countPulses();
+		}
+
+		if (root != null) {
+			dockStation.fireLayoutChanged(DockLayoutEvent.Type.REARRANGED, null);
+		}
+		return root != null;
+	}
+}
@@ -0,0 +1,131 @@
+package com.anchorage.system;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Writes layout models to their files on a background thread. A save
+ * waiting for its turn is replaced by the next save of the same file, so when
+ * saves come faster than the disk only the latest layout of each file is
+ * written, and all the callers that asked for it are completed together.
+ */
+final class LayoutSaveQueue {
+
+	private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "AnchorFX layout saver");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private static final Map<Path, PendingSave> pendingSaves = new ConcurrentHashMap<>();
+
+	private static final class PendingSave {
+		private LayoutModel model;
+		private CompletableFuture<Boolean> future;
+		private boolean running;
+		// set once the save is no longer in the map, it then takes no layout
+		private boolean removed;
+	}
+
+	private LayoutSaveQueue() {
+	}
+
+	/**
+	 * Queues the layout to be written to the file.
+	 * 
+	 * @param model layout to write
+	 * @param path destination file
+	 * @return completed with true once the layout, or a later one of the same
+	 *         file, has been written, or with false if writing failed
+	 */
+	static CompletableFuture<Boolean> enqueue(final LayoutModel model, final Path path) {
+		final Path key = path.toAbsolutePath().normalize();
+		while (true) {
+			final PendingSave pending = pendingSaves.computeIfAbsent(key, k -> new PendingSave());
+			synchronized (pending) {
+				if (pending.removed) {
+					continue;
+				}
+				pending.model = model;
+				if (pending.future == null) {
+					pending.future = new CompletableFuture<>();
+				}
+				CompletableFuture<Boolean> future = pending.future;
+				if (!pending.running) {
+					pending.running = true;
+					executor.execute(() -> drain(pending, key));
+				}
+				return future;
+			}
+		}
+	}
+
+	private static void drain(final PendingSave pending, final Path path) {
+		while (true) {
+			LayoutModel model;
+			CompletableFuture<Boolean> future;
+			synchronized (pending) {
+				model = pending.model;
+				future = pending.future;
+				pending.model = null;
+				pending.future = null;
+				if (model == null) {
+					pending.running = false;
+					pending.removed = true;
+					pendingSaves.remove(path, pending);
+					return;
+				}
+			}
+			future.complete(write(model, path));
+		}
+	}
+
+	private static boolean write(final LayoutModel model, final Path path) {
+		Path directory = path.getParent();
+		Path tempFile = null;
+		try {
+			tempFile = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+			try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE);
+					OutputStream output = new BufferedOutputStream(Channels.newOutputStream(channel))) {
+				StaxLayoutCodec.write(model, output);
+				output.flush();
+				// the content must be on the disk before the rename, or a crash may leave an empty file
+				channel.force(true);
+			}
+			// the temporary file is readable by its owner only, the file it replaces keeps its permissions
+			if (Files.exists(path) && Files.getFileAttributeView(path, PosixFileAttributeView.class) != null) {
+				Files.setPosixFilePermissions(tempFile, Files.getPosixFilePermissions(path));
+			}
+			try {
+				Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+			return true;
+		} catch (Exception e) {
+			e.printStackTrace();
+			if (tempFile != null) {
+				try {
+					Files.deleteIfExists(tempFile);
+				} catch (IOException suppressed) {
+					e.addSuppressed(suppressed);
+				}
+			}
+			return false;
+		}
+	}
+}
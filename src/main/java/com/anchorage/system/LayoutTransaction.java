@@ -0,0 +1,462 @@
+package com.anchorage.system;
+
+import static com.anchorage.docks.containers.common.AnchorageSettings.FLOATING_NODE_DROPSHADOW_RADIUS;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.anchorage.docks.containers.StageFloatable;
+import com.anchorage.docks.containers.common.DockCommons;
+import com.anchorage.docks.containers.interfaces.DockContainableComponent;
+import com.anchorage.docks.containers.subcontainers.DockSplitterContainer;
+import com.anchorage.docks.containers.subcontainers.DockTabberContainer;
+import com.anchorage.docks.node.DockNode;
+import com.anchorage.docks.node.DockNode.DockPosition;
+import com.anchorage.docks.stations.DockStation;
+import com.anchorage.docks.stations.DockSubStation;
+
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.control.Tab;
+
+/**
+ * Batch of docking operations applied to a station at once. The operations
+ * follow the rules of {@link DockNode#dock(DockNode, DockPosition)},
+ * {@link DockNode#undock()} and their variants, but they change an in-memory
+ * copy of the layout instead of the containers; {@link #commit()} then brings
+ * the station to the final layout in a single pass, keeping the containers
+ * that did not change, and notifies the listeners of the station once.
+ * <p>
+ * A transaction is created by {@link DockStation#beginTransaction()} and used
+ * on the JavaFX thread. The docks maximized when it begins are restored, and
+ * maximized again if the transaction is rolled back.
+ */
+public final class LayoutTransaction {
+
+	private final DockStation station;
+	// holds the root of the station as its only child, as a substation does
+	private final LayoutElement stationElement = new LayoutElement(LayoutElement.Kind.SUBSTATION);
+	private final Map<DockStation, LayoutElement> stationElements = new IdentityHashMap<>();
+	private final Map<DockNode, LayoutElement> elements = new IdentityHashMap<>();
+	private final Map<LayoutElement, DockNode> dockNodes = new IdentityHashMap<>();
+	private final Map<LayoutElement, LayoutElement> parents = new IdentityHashMap<>();
+	private final List<LayoutElement> floating = new ArrayList<>();
+	// in the order they were restored
+	private final List<DockNode> maximized = new ArrayList<>();
+	private boolean open = true;
+
+	/**
+	 * Reads the current layout of the station. Use
+	 * {@link DockStation#beginTransaction()}.
+	 *
+	 * @param station Root dock station
+	 */
+	public LayoutTransaction(final DockStation station) {
+		checkFxThread();
+		this.station = station;
+		stationElements.put(station, stationElement);
+		restoreMaximized(station);
+		Node root = rootOf(station);
+		if (root != null) {
+			add(stationElement, read(root));
+		}
+		for (StageFloatable stage : AnchorageSystem.getFloatingStages()) {
+			DockNode dockNode = stage.getDockNode();
+			if (dockNode.stationProperty().get() == station) {
+				addFloating(dockNode, stage.getX() + FLOATING_NODE_DROPSHADOW_RADIUS,
+						stage.getY() + FLOATING_NODE_DROPSHADOW_RADIUS, stage.getScene().getWidth(),
+						stage.getScene().getHeight());
+			}
+		}
+	}
+
+	private static void checkFxThread() {
+		if (!Platform.isFxApplicationThread()) {
+			throw new IllegalStateException("Layout transactions must be used on the JavaFX thread");
+		}
+	}
+
+	private void restoreMaximized(final DockStation dockStation) {
+		for (DockNode dockNode : new ArrayList<>(dockStation.getDockNodes())) {
+			if (dockNode.maximizingProperty().get()) {
+				dockNode.restoreLayout();
+				maximized.add(dockNode);
+			}
+			if (dockNode instanceof DockSubStation) {
+				restoreMaximized(((DockSubStation) dockNode).getSubStation());
+			}
+		}
+	}
+
+	private static Node rootOf(final DockStation dockStation) {
+		for (Node child : dockStation.getChildren()) {
+			if (child instanceof DockContainableComponent) {
+				return child;
+			}
+		}
+		return null;
+	}
+
+	/////////////////////////////
+	// Layout copy
+	////////////////////////////
+
+	private LayoutElement read(final Node node) {
+		if (node instanceof DockNode) {
+			return elementOf((DockNode) node);
+		}
+		LayoutElement element;
+		if (node instanceof DockSplitterContainer) {
+			DockSplitterContainer splitter = (DockSplitterContainer) node;
+			element = new LayoutElement(LayoutElement.Kind.SPLITTER);
+			element.orientation = splitter.getOrientation();
+			element.dividerPositions = splitter.getDividerPositions();
+			for (Node item : splitter.getItems()) {
+				add(element, read(item));
+			}
+		} else {
+			element = new LayoutElement(LayoutElement.Kind.TABBER);
+			for (Tab tab : ((DockTabberContainer) node).getTabs()) {
+				add(element, read(tab.getContent()));
+			}
+		}
+		return element;
+	}
+
+	/**
+	 * Get the element of a dock, created with the layout of its substation the
+	 * first time the dock is used.
+	 */
+	private LayoutElement elementOf(final DockNode dockNode) {
+		LayoutElement element = elements.get(dockNode);
+		if (element != null && element.kind != LayoutElement.Kind.FLOATING) {
+			return element;
+		}
+		if (dockNode instanceof DockSubStation) {
+			DockStation subStation = ((DockSubStation) dockNode).getSubStation();
+			element = new LayoutElement(LayoutElement.Kind.SUBSTATION);
+			stationElements.put(subStation, element);
+			Node root = rootOf(subStation);
+			if (root != null) {
+				add(element, read(root));
+			}
+		} else {
+			element = new LayoutElement(LayoutElement.Kind.NODE);
+		}
+		element.id = dockNode.getDockId();
+		element.name = dockNode.getContent().titleProperty().get();
+		elements.put(dockNode, element);
+		dockNodes.put(element, dockNode);
+		return element;
+	}
+
+	private boolean isInLayout(final DockNode dockNode) {
+		LayoutElement element = elements.get(dockNode);
+		return element != null && (parents.containsKey(element) || floating.contains(element));
+	}
+
+	private void add(final LayoutElement parent, final LayoutElement child) {
+		parent.children.add(child);
+		parents.put(child, parent);
+	}
+
+	private void replace(final LayoutElement oldElement, final LayoutElement newElement) {
+		LayoutElement parent = parents.remove(oldElement);
+		parent.children.set(indexOf(parent, oldElement), newElement);
+		parents.put(newElement, parent);
+	}
+
+	private static int indexOf(final LayoutElement parent, final LayoutElement child) {
+		for (int i = 0; i < parent.children.size(); i++) {
+			if (parent.children.get(i) == child) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private LayoutElement splitter(final LayoutElement existElement, final LayoutElement newElement,
+			final DockPosition position, final double percentage) {
+		LayoutElement splitter = new LayoutElement(LayoutElement.Kind.SPLITTER);
+		splitter.orientation = DockCommons.getOrientation(position);
+		splitter.dividerPositions = new double[] { percentage };
+		if (isAfter(position)) {
+			add(splitter, existElement);
+			add(splitter, newElement);
+		} else {
+			add(splitter, newElement);
+			add(splitter, existElement);
+		}
+		return splitter;
+	}
+
+	/**
+	 * Inserts the element beside an item of a splitter along the position, as
+	 * {@link DockSplitterContainer#putBeside(Node, Node, DockPosition, double)}.
+	 */
+	private boolean putBeside(final LayoutElement splitter, final LayoutElement element, final LayoutElement target,
+			final DockPosition position, final double percentage) {
+		if (splitter == null || splitter.kind != LayoutElement.Kind.SPLITTER
+				|| splitter.orientation != DockCommons.getOrientation(position)) {
+			return false;
+		}
+		int indexOfTarget = indexOf(splitter, target);
+		double[] positions = LayoutRestorer.completeDividerPositions(splitter.dividerPositions,
+				splitter.children.size());
+		double start = (indexOfTarget == 0) ? 0 : positions[indexOfTarget - 1];
+		double end = (indexOfTarget == positions.length) ? 1 : positions[indexOfTarget];
+		double[] newPositions = new double[positions.length + 1];
+		System.arraycopy(positions, 0, newPositions, 0, indexOfTarget);
+		newPositions[indexOfTarget] = start + (end - start) * percentage;
+		System.arraycopy(positions, indexOfTarget, newPositions, indexOfTarget + 1, positions.length - indexOfTarget);
+		splitter.dividerPositions = newPositions;
+		splitter.children.add(isAfter(position) ? indexOfTarget + 1 : indexOfTarget, element);
+		parents.put(element, splitter);
+		return true;
+	}
+
+	/**
+	 * Inserts the element at an edge of a splitter, as
+	 * {@link DockSplitterContainer#putAtEdge(Node, DockPosition, double)}.
+	 */
+	private boolean putAtEdge(final LayoutElement splitter, final LayoutElement element, final DockPosition position,
+			final double percentage) {
+		if (splitter.kind != LayoutElement.Kind.SPLITTER
+				|| splitter.orientation != DockCommons.getOrientation(position)) {
+			return false;
+		}
+		double[] positions = LayoutRestorer.completeDividerPositions(splitter.dividerPositions,
+				splitter.children.size());
+		double[] newPositions = new double[positions.length + 1];
+		if (isAfter(position)) {
+			for (int i = 0; i < positions.length; i++) {
+				newPositions[i] = positions[i] * percentage;
+			}
+			newPositions[positions.length] = percentage;
+			splitter.children.add(element);
+		} else {
+			newPositions[0] = percentage;
+			for (int i = 0; i < positions.length; i++) {
+				newPositions[i + 1] = percentage + positions[i] * (1 - percentage);
+			}
+			splitter.children.add(0, element);
+		}
+		splitter.dividerPositions = newPositions;
+		parents.put(element, splitter);
+		return true;
+	}
+
+	private static boolean isAfter(final DockPosition position) {
+		return position == DockPosition.BOTTOM || position == DockPosition.RIGHT;
+	}
+
+	private LayoutElement tabber(final LayoutElement existElement, final LayoutElement newElement) {
+		LayoutElement tabber = new LayoutElement(LayoutElement.Kind.TABBER);
+		add(tabber, existElement);
+		add(tabber, newElement);
+		return tabber;
+	}
+
+	/////////////////////////////
+	// Operations
+	////////////////////////////
+
+	private void checkOpen() {
+		if (!open) {
+			throw new IllegalStateException("The transaction is over");
+		}
+	}
+
+	public void dock(final DockNode dockNode, final DockStation dockStation, final DockPosition position) {
+		dock(dockNode, dockStation, position, 0.5);
+	}
+
+	/**
+	 * Docks the node in a station, as {@link DockNode#dock(DockStation, DockPosition, double)}.
+	 * The station is the station of the transaction or the station of one of
+	 * its substations.
+	 */
+	public void dock(final DockNode dockNode, final DockStation dockStation, final DockPosition position,
+			final double percentage) {
+		checkOpen();
+		LayoutElement holder = stationElements.get(dockStation);
+		if (holder == null || isInLayout(dockNode)) {
+			return;
+		}
+		putDock(holder, elementOf(dockNode), position, percentage);
+	}
+
+	public void dock(final DockNode dockNode, final DockSubStation subStation, final DockPosition position) {
+		dock(dockNode, subStation.getSubStation(), position, 0.5);
+	}
+
+	public void dock(final DockNode dockNode, final DockSubStation subStation, final DockPosition position,
+			final double percentage) {
+		dock(dockNode, subStation.getSubStation(), position, percentage);
+	}
+
+	public void dock(final DockNode dockNode, final DockNode nodeTarget, final DockPosition position) {
+		dock(dockNode, nodeTarget, position, 0.5);
+	}
+
+	/**
+	 * Docks the node next to a docked node, as
+	 * {@link DockNode#dock(DockNode, DockPosition, double)}.
+	 */
+	public void dock(final DockNode dockNode, final DockNode nodeTarget, final DockPosition position,
+			final double percentage) {
+		checkOpen();
+		LayoutElement target = elements.get(nodeTarget);
+		LayoutElement parent = (target != null) ? parents.get(target) : null;
+		if (parent == null || isInLayout(dockNode)) {
+			return;
+		}
+		LayoutElement element = elementOf(dockNode);
+		switch (parent.kind) {
+		case SUBSTATION:
+			putDock(parent, element, position, percentage);
+			break;
+		case SPLITTER:
+			if (DockCommons.isABorderPosition(position)) {
+				if (!putBeside(parent, element, target, position, percentage)) {
+					replace(target, splitter(target, element, position, percentage));
+				}
+			} else {
+				replace(target, tabber(target, element));
+			}
+			break;
+		case TABBER:
+			if (DockCommons.isABorderPosition(position)) {
+				if (!putBeside(parents.get(parent), element, parent, position, 0.5)) {
+					replace(parent, splitter(parent, element, position, 0.5));
+				}
+			} else {
+				add(parent, element);
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void putDock(final LayoutElement holder, final LayoutElement element, final DockPosition position,
+			final double percentage) {
+		if (holder.children.isEmpty()) {
+			add(holder, element);
+			return;
+		}
+		LayoutElement existElement = holder.children.get(0);
+		if (DockCommons.isABorderPosition(position) && putAtEdge(existElement, element, position, percentage)) {
+			return;
+		}
+		if (DockCommons.isABorderPosition(position)) {
+			replace(existElement, splitter(existElement, element, position, percentage));
+		} else if (existElement.kind == LayoutElement.Kind.TABBER) {
+			add(existElement, element);
+		} else if (existElement.kind == LayoutElement.Kind.SPLITTER) {
+			replace(existElement, splitter(existElement, element, DockPosition.BOTTOM, 0.5));
+		} else {
+			replace(existElement, tabber(existElement, element));
+		}
+	}
+
+	/**
+	 * Takes the node out of the layout, as {@link DockNode#undock()}.
+	 */
+	public void undock(final DockNode dockNode) {
+		checkOpen();
+		LayoutElement element = elements.get(dockNode);
+		if (element == null) {
+			return;
+		}
+		if (floating.remove(element)) {
+			return;
+		}
+		LayoutElement parent = parents.remove(element);
+		if (parent == null) {
+			return;
+		}
+		int index = indexOf(parent, element);
+		parent.children.remove(index);
+		if (parent.kind == LayoutElement.Kind.SPLITTER && parent.dividerPositions != null
+				&& parent.dividerPositions.length > 0) {
+			double[] positions = new double[parent.dividerPositions.length - 1];
+			// the space of the item goes to the previous one, as in the splitter
+			int removed = (index > 0) ? index - 1 : 0;
+			for (int i = 0, j = 0; i < parent.dividerPositions.length; i++) {
+				if (i != removed) {
+					positions[j++] = parent.dividerPositions[i];
+				}
+			}
+			parent.dividerPositions = positions;
+		}
+		if (parent.kind != LayoutElement.Kind.SUBSTATION && parent.children.size() == 1) {
+			LayoutElement remaining = parent.children.remove(0);
+			parents.remove(remaining);
+			replace(parent, remaining);
+		}
+	}
+
+	/**
+	 * Moves the node to a floating stage, as
+	 * {@link DockNode#dockAsFloating(javafx.stage.Window, DockStation, double, double, double, double)}.
+	 * A docked node is undocked first.
+	 */
+	public void dockAsFloating(final DockNode dockNode, final double x, final double y, final double width,
+			final double height) {
+		checkOpen();
+		undock(dockNode);
+		addFloating(dockNode, x, y, width, height);
+	}
+
+	private void addFloating(final DockNode dockNode, final double x, final double y, final double width,
+			final double height) {
+		LayoutElement element = new LayoutElement(LayoutElement.Kind.FLOATING);
+		element.id = dockNode.getDockId();
+		element.name = dockNode.getContent().titleProperty().get();
+		element.x = x;
+		element.y = y;
+		element.width = width;
+		element.height = height;
+		LayoutElement previous = elements.put(dockNode, element);
+		if (previous != null) {
+			dockNodes.remove(previous);
+		}
+		dockNodes.put(element, dockNode);
+		floating.add(element);
+	}
+
+	/////////////////////////////
+	// Completion
+	////////////////////////////
+
+	public boolean isOpen() {
+		return open;
+	}
+
+	/**
+	 * Applies the operations of the transaction to the station and ends it.
+	 */
+	public void commit() {
+		checkOpen();
+		open = false;
+		maximized.clear();
+		LayoutElement root = stationElement.children.isEmpty() ? null : stationElement.children.get(0);
+		new LayoutReconciler(station).reconcile(root, floating, dockNodes);
+	}
+
+	/**
+	 * Ends the transaction without changing the station, the docks restored
+	 * when it began are maximized again.
+	 */
+	public void rollback() {
+		open = false;
+		// the outer docks were restored first, they are maximized last
+		for (int i = maximized.size() - 1; i >= 0; i--) {
+			maximized.get(i).maximizeLayout();
+		}
+		maximized.clear();
+	}
+}
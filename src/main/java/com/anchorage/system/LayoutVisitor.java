@@ -0,0 +1,31 @@
+package com.anchorage.system;
+
+import javafx.geometry.Orientation;
+
+/**
+ * Receives the structure of a layout, element by element, in the order of the
+ * layout files: the docked tree first, then the floating nodes. It is used to
+ * stream a layout between a station and a codec without building a document.
+ */
+interface LayoutVisitor {
+
+	void startSplitter(Orientation orientation, double[] dividerPositions);
+
+	void startTabber();
+
+	void startSubStation(String id, String name);
+
+	/**
+	 * Closes the last splitter, tabber or substation started.
+	 */
+	void end();
+
+	/**
+	 * @param id identifier of the node, or null if unknown
+	 * @param name title of the node
+	 * @param contentType simple class name of the content, or null if unknown
+	 */
+	void dockNode(String id, String name, String contentType);
+
+	void floatingNode(String id, String name, double x, double y, double width, double height);
+}
@@ -0,0 +1,346 @@
+package com.anchorage.system;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.anchorage.docks.containers.common.DockCommons;
+import com.anchorage.docks.containers.subcontainers.DockSplitterContainer;
+import com.anchorage.docks.containers.subcontainers.DockTabberContainer;
+import com.anchorage.docks.stations.DockStation;
+
+import javafx.application.Platform;
+import javafx.scene.Node;
+
+/**
+ * Switches a station between named arrangements of the same docks. The saved
+ * layout of a perspective is parsed once and kept in memory, so switching back
+ * to it reads neither the disk nor the XML parser; the models least recently
+ * used are dropped once they exceed the memory budget, and read again from
+ * their file when needed. For the perspectives used most recently, the empty
+ * splitters and tab panes of their layout are built ahead, once the station
+ * is idle, and are filled with the docks when switching.
+ * <p>
+ * Switching goes through the reconciliation of
+ * {@link AnchorageLayout#reconcileLayout(DockStation, String)}: the containers
+ * shared by both arrangements are kept.
+ */
+public final class PerspectiveManager {
+
+	public static final long DEFAULT_MEMORY_BUDGET = 1024 * 1024;
+	public static final int DEFAULT_PREBUILT_PERSPECTIVES = 2;
+
+	private static final class Perspective {
+		private final String name;
+		private final Path path;
+		private LayoutElement root;
+		private List<LayoutElement> floating;
+		private long size;
+		private Map<LayoutElement, Node> skeletons;
+
+		private Perspective(String name, Path path) {
+			this.name = name;
+			this.path = path;
+		}
+
+		private boolean isLoaded() {
+			return floating != null;
+		}
+
+		private void unload() {
+			root = null;
+			floating = null;
+			size = 0;
+			skeletons = null;
+		}
+	}
+
+	private final DockStation station;
+	private final Map<String, Perspective> perspectives = new LinkedHashMap<>();
+	// loaded perspectives, least recently used first
+	private final Map<String, Perspective> loaded = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+	private int prebuiltPerspectives = DEFAULT_PREBUILT_PERSPECTIVES;
+	private long loadedSize;
+	private String activePerspective;
+	private boolean prebuildScheduled;
+
+	public PerspectiveManager(final DockStation station) {
+		this.station = station;
+	}
+
+	/**
+	 * Sets the memory allowed to the parsed layouts. It is an estimate of the
+	 * size of the models; the skeletons are not accounted.
+	 *
+	 * @param memoryBudget budget in bytes
+	 */
+	public void setMemoryBudget(final long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+		evict(null);
+	}
+
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * Get the estimated memory held by the parsed layouts.
+	 *
+	 * @return size in bytes
+	 */
+	public long getLoadedSize() {
+		return loadedSize;
+	}
+
+	/**
+	 * Sets how many of the perspectives used most recently, other than the
+	 * active one, have their containers built ahead.
+	 *
+	 * @param prebuiltPerspectives number of perspectives, 0 to build none
+	 */
+	public void setPrebuiltPerspectives(final int prebuiltPerspectives) {
+		this.prebuiltPerspectives = prebuiltPerspectives;
+	}
+
+	public int getPrebuiltPerspectives() {
+		return prebuiltPerspectives;
+	}
+
+	/**
+	 * Adds a perspective saved in a layout file. The file is read the first
+	 * time the perspective is used.
+	 *
+	 * @param name name of the perspective
+	 * @param filePath file path where the layout is saved.
+	 */
+	public void addPerspective(final String name, final String filePath) {
+		removePerspective(name);
+		perspectives.put(name, new Perspective(name, Paths.get(filePath)));
+	}
+
+	public void removePerspective(final String name) {
+		Perspective perspective = perspectives.remove(name);
+		if (perspective != null && loaded.remove(name) != null) {
+			loadedSize -= perspective.size;
+			perspective.unload();
+		}
+		if (name.equals(activePerspective)) {
+			activePerspective = null;
+		}
+	}
+
+	public List<String> getPerspectiveNames() {
+		return new ArrayList<>(perspectives.keySet());
+	}
+
+	/**
+	 * Get the name of the perspective the station was last switched to, or
+	 * saved as.
+	 *
+	 * @return the name of the perspective, or null
+	 */
+	public String getActivePerspective() {
+		return activePerspective;
+	}
+
+	public boolean isLoaded(final String name) {
+		Perspective perspective = perspectives.get(name);
+		return perspective != null && perspective.isLoaded();
+	}
+
+	/**
+	 * Reads the layout of a perspective in memory ahead of switching to it.
+	 *
+	 * @param name name of the perspective
+	 * @return false if the perspective is unknown or its layout cannot be read
+	 */
+	public boolean preload(final String name) {
+		Perspective perspective = perspectives.get(name);
+		return perspective != null && load(perspective);
+	}
+
+	/**
+	 * Switches the station to a perspective. Must be called on the JavaFX
+	 * thread.
+	 *
+	 * @param name name of the perspective
+	 * @return boolean if switching has been successful.
+	 */
+	public boolean switchTo(final String name) {
+		checkFxThread();
+		Perspective perspective = perspectives.get(name);
+		if (perspective == null || !load(perspective)) {
+			return false;
+		}
+		Map<LayoutElement, Node> skeletons = perspective.skeletons;
+		perspective.skeletons = null;
+		boolean result = new LayoutReconciler(station, skeletons).reconcile(perspective.root,
+				perspective.floating);
+		if (result) {
+			activePerspective = name;
+			schedulePrebuild();
+		}
+		return result;
+	}
+
+	/**
+	 * Saves the current layout of the station as a perspective. The model in
+	 * memory is replaced right away, the file is written in background. Must be
+	 * called on the JavaFX thread.
+	 *
+	 * @param name name of an added perspective
+	 * @return completed with true once the file has been written, or with false
+	 *         if the perspective is unknown or writing failed
+	 */
+	public CompletableFuture<Boolean> savePerspective(final String name) {
+		checkFxThread();
+		Perspective perspective = perspectives.get(name);
+		if (perspective == null || station.getChildren().isEmpty()) {
+			return CompletableFuture.completedFuture(false);
+		}
+		LayoutModel model = LayoutModel.capture(station);
+		store(perspective, model);
+		activePerspective = name;
+		return LayoutSaveQueue.enqueue(model, perspective.path);
+	}
+
+	private static void checkFxThread() {
+		if (!Platform.isFxApplicationThread()) {
+			throw new IllegalStateException("Perspectives must be switched on the JavaFX thread");
+		}
+	}
+
+	/////////////////////////////
+	// Models
+	////////////////////////////
+
+	private boolean load(final Perspective perspective) {
+		if (perspective.isLoaded()) {
+			// marks the perspective as the most recently used
+			loaded.get(perspective.name);
+			return true;
+		}
+		if (!Files.isRegularFile(perspective.path)) {
+			return false;
+		}
+		try (InputStream input = new BufferedInputStream(Files.newInputStream(perspective.path))) {
+			store(perspective, StaxLayoutCodec.readModel(input));
+			return true;
+		} catch (Exception e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	private void store(final Perspective perspective, final LayoutModel model) {
+		if (loaded.remove(perspective.name) != null) {
+			loadedSize -= perspective.size;
+		}
+		perspective.unload();
+		perspective.root = LayoutElement.of(model.getRoot());
+		perspective.floating = LayoutElement.floatingOf(model);
+		long size = 0;
+		if (perspective.root != null) {
+			size += estimateSize(perspective.root);
+		}
+		for (LayoutElement element : perspective.floating) {
+			size += estimateSize(element);
+		}
+		perspective.size = size;
+		loaded.put(perspective.name, perspective);
+		loadedSize += size;
+		evict(perspective);
+	}
+
+	/**
+	 * Drops the models least recently used until the loaded ones fit in the
+	 * budget. The model in use is always kept.
+	 */
+	private void evict(final Perspective keep) {
+		Iterator<Perspective> iterator = loaded.values().iterator();
+		while (loadedSize > memoryBudget && iterator.hasNext()) {
+			Perspective perspective = iterator.next();
+			if (perspective != keep) {
+				iterator.remove();
+				loadedSize -= perspective.size;
+				perspective.unload();
+			}
+		}
+	}
+
+	private static long estimateSize(final LayoutElement element) {
+		// object header and fields, plus the list of children
+		long size = 80 + 16 + 4L * element.children.size();
+		if (element.id != null) {
+			size += 40 + 2L * element.id.length();
+		}
+		if (element.name != null) {
+			size += 40 + 2L * element.name.length();
+		}
+		if (element.dividerPositions != null) {
+			size += 16 + 8L * element.dividerPositions.length;
+		}
+		for (LayoutElement child : element.children) {
+			size += estimateSize(child);
+		}
+		return size;
+	}
+
+	/////////////////////////////
+	// Skeletons
+	////////////////////////////
+
+	private void schedulePrebuild() {
+		if (prebuiltPerspectives > 0 && !prebuildScheduled) {
+			prebuildScheduled = true;
+			Platform.runLater(this::prebuild);
+		}
+	}
+
+	private void prebuild() {
+		prebuildScheduled = false;
+		List<Perspective> recent = new ArrayList<>(loaded.values());
+		int count = 0;
+		for (int i = recent.size() - 1; i >= 0; i--) {
+			Perspective perspective = recent.get(i);
+			if (perspective.name.equals(activePerspective)) {
+				continue;
+			}
+			if (count++ < prebuiltPerspectives) {
+				if (perspective.skeletons == null && perspective.root != null) {
+					perspective.skeletons = new IdentityHashMap<>();
+					buildSkeleton(perspective.root, perspective.skeletons);
+				}
+			} else {
+				perspective.skeletons = null;
+			}
+		}
+	}
+
+	private static void buildSkeleton(final LayoutElement element, final Map<LayoutElement, Node> skeletons) {
+		if (element.kind == LayoutElement.Kind.SPLITTER && element.children.size() >= 2) {
+			DockSplitterContainer splitter = DockCommons.createEmptySplitter();
+			splitter.setOrientation(element.orientation);
+			splitter.getStyleClass().add("docknode-split-pane");
+			skeletons.put(element, splitter);
+		} else if (element.kind == LayoutElement.Kind.TABBER && !element.children.isEmpty()) {
+			DockTabberContainer tabber = new DockTabberContainer();
+			tabber.getStyleClass().add("docknode-tab-pane");
+			skeletons.put(element, tabber);
+		}
+		for (LayoutElement child : element.children) {
+			buildSkeleton(child, skeletons);
+		}
+	}
+}
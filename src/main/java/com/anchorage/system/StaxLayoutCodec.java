@@ -0,0 +1,450 @@
+package com.anchorage.system;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.anchorage.docks.node.DockNode;
+import com.anchorage.docks.stations.DockStation;
+
+import javafx.geometry.Orientation;
+
+/**
+ * Streaming alternative to the DOM based {@link AnchorageLayout}. It writes
+ * and reads the same elements and attributes in a single pass, without
+ * building a document, so files written by one can be restored by the other.
+ */
+public class StaxLayoutCodec {
+
+	private static final String ROOT_ELEMENT = "DockStation";
+	private static final String FLOATING_ELEMENT = "floating";
+	private static final String SPLITTER_ELEMENT = "DockSplitterContainer";
+	private static final String TABBER_ELEMENT = "DockTabberContainer";
+	private static final String SUBSTATION_ELEMENT = "DockSubStation";
+	private static final String NODE_ELEMENT = "DockNode";
+	private static final String JOURNAL_ATTRIBUTE = "journal";
+
+	/////////////////////////////
+	// Save Layout
+	////////////////////////////
+
+	/**
+	 * Saves layout of the DockStation. <br/>
+	 * 
+	 * @param rootDockStation Root dock station
+	 * @param filePath file path where to save layout.
+	 * @return boolean if saving layout has been successful.
+	 */
+	public static boolean saveLayout(final DockStation rootDockStation, final String filePath) {
+		if (rootDockStation.getChildren().isEmpty()) {
+			return false;
+		}
+		try (OutputStream output = new BufferedOutputStream(new FileOutputStream(filePath))) {
+			write(rootDockStation, output);
+		} catch (Exception e) {
+			e.printStackTrace();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Writes layout of the DockStation to a stream.
+	 * 
+	 * @param rootDockStation Root dock station
+	 * @param output destination of the layout, left open
+	 * @throws XMLStreamException if the layout cannot be written
+	 */
+	public static void write(final DockStation rootDockStation, final OutputStream output) throws XMLStreamException {
+		write(visitor -> AnchorageLayout.visitLayout(rootDockStation, visitor), output);
+	}
+
+	/**
+	 * Writes a layout model to a stream. It can be called on any thread.
+	 * 
+	 * @param model layout to write
+	 * @param output destination of the layout, left open
+	 * @throws XMLStreamException if the layout cannot be written
+	 */
+	public static void write(final LayoutModel model, final OutputStream output) throws XMLStreamException {
+		write(model::accept, output, model.getJournalSequence());
+	}
+
+	private static void write(final Consumer<LayoutVisitor> layout, final OutputStream output) throws XMLStreamException {
+		write(layout, output, -1);
+	}
+
+	private static void write(final Consumer<LayoutVisitor> layout, final OutputStream output,
+			final long journalSequence) throws XMLStreamException {
+		XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(output, "UTF-8");
+		LayoutWriter layoutWriter = new LayoutWriter(writer);
+		layoutWriter.start();
+		if (journalSequence >= 0) {
+			writer.writeAttribute(JOURNAL_ATTRIBUTE, Long.toString(journalSequence));
+		}
+		layout.accept(layoutWriter);
+		layoutWriter.finish();
+		writer.close();
+	}
+
+	private static final class LayoutWriter implements LayoutVisitor {
+
+		private final XMLStreamWriter writer;
+		private int depth;
+		private boolean floatingStarted;
+
+		private LayoutWriter(final XMLStreamWriter writer) {
+			this.writer = writer;
+		}
+
+		private void start() throws XMLStreamException {
+			writer.writeStartDocument("UTF-8", "1.0");
+			writer.writeCharacters("\n");
+			writer.writeStartElement(ROOT_ELEMENT);
+			depth = 1;
+		}
+
+		private void finish() throws XMLStreamException {
+			if (!floatingStarted) {
+				indent();
+				writer.writeEmptyElement(FLOATING_ELEMENT);
+			} else {
+				depth--;
+				indent();
+				writer.writeEndElement();
+			}
+			writer.writeCharacters("\n");
+			writer.writeEndElement();
+			writer.writeCharacters("\n");
+			writer.writeEndDocument();
+		}
+
+		private void indent() throws XMLStreamException {
+			writer.writeCharacters("\n");
+			for (int i = 0; i < depth; i++) {
+				writer.writeCharacters("    ");
+			}
+		}
+
+		private void startElement(final String name) {
+			try {
+				indent();
+				writer.writeStartElement(name);
+				depth++;
+			} catch (XMLStreamException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		private void writeId(final String id) throws XMLStreamException {
+			if (id != null) {
+				writer.writeAttribute("id", id);
+			}
+		}
+
+		@Override
+		public void startSplitter(final Orientation orientation, final double[] dividerPositions) {
+			startElement(SPLITTER_ELEMENT);
+			try {
+				writer.writeAttribute("dividerPositions", formatDividerPositions(dividerPositions));
+				writer.writeAttribute("orientation", orientation.toString());
+			} catch (XMLStreamException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public void startTabber() {
+			startElement(TABBER_ELEMENT);
+		}
+
+		@Override
+		public void startSubStation(final String id, final String name) {
+			startElement(SUBSTATION_ELEMENT);
+			try {
+				writeId(id);
+				writer.writeAttribute("name", name);
+			} catch (XMLStreamException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public void end() {
+			try {
+				depth--;
+				indent();
+				writer.writeEndElement();
+			} catch (XMLStreamException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public void dockNode(final String id, final String name, final String contentType) {
+			try {
+				indent();
+				if (contentType == null) {
+					writer.writeEmptyElement(NODE_ELEMENT);
+					writeId(id);
+					writer.writeAttribute("name", name);
+				} else {
+					writer.writeStartElement(NODE_ELEMENT);
+					writeId(id);
+					writer.writeAttribute("name", name);
+					depth++;
+					indent();
+					writer.writeEmptyElement(contentType);
+					depth--;
+					indent();
+					writer.writeEndElement();
+				}
+			} catch (XMLStreamException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public void floatingNode(final String id, final String name, final double x, final double y, final double width,
+				final double height) {
+			if (!floatingStarted) {
+				startElement(FLOATING_ELEMENT);
+				floatingStarted = true;
+			}
+			try {
+				indent();
+				writer.writeEmptyElement(NODE_ELEMENT);
+				writeId(id);
+				writer.writeAttribute("name", name);
+				writer.writeAttribute("position-x", Double.toString(x));
+				writer.writeAttribute("position-y", Double.toString(y));
+				writer.writeAttribute("width", Double.toString(width));
+				writer.writeAttribute("height", Double.toString(height));
+			} catch (XMLStreamException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	/////////////////////////////
+	// Restore Layout
+	////////////////////////////
+
+	/**
+	 * Restores layout of already docked nodes.
+	 * 
+	 * @param dockStation DockStation with all docked nodes.
+	 * @param filePath Path to file, where layout is saved.
+	 * @return boolean if restoring layout has been successful.
+	 */
+	public static boolean restoreLayout(final DockStation dockStation, final String filePath) {
+		return restoreLayout(dockStation, filePath, null);
+	}
+
+	/**
+	 * Restores layout of already docked nodes, recording the time spent in each
+	 * phase of the restore. The file is parsed before the station is changed,
+	 * so a file that cannot be read leaves the station as it is; the detach
+	 * phase includes parsing the file.
+	 * 
+	 * @param dockStation DockStation with all docked nodes.
+	 * @param filePath Path to file, where layout is saved.
+	 * @param timing receiver of the timings, may be null
+	 * @return boolean if restoring layout has been successful.
+	 */
+	public static boolean restoreLayout(final DockStation dockStation, final String filePath,
+			final LayoutRestoreTiming timing) {
+		if (timing != null) {
+			timing.start(dockStation);
+		}
+		try {
+			LayoutModel model;
+			try (InputStream input = new BufferedInputStream(new FileInputStream(filePath))) {
+				model = readModel(input);
+			}
+			// Take the docked tree out of the station and collect all the nodes
+			final List<DockNode> dockNodeList = AnchorageLayout.detachAllDocks(dockStation);
+			if (timing != null) {
+				timing.detached();
+			}
+
+			LayoutRestorer restorer = new LayoutRestorer(dockStation, dockNodeList, timing);
+			model.accept(restorer);
+			return restorer.finish();
+		} catch (Exception e) {
+			e.printStackTrace();
+			if (timing != null) {
+				timing.cancel();
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Reads a layout file into a model.
+	 * 
+	 * @param input source of the layout
+	 * @return the model of the layout
+	 * @throws XMLStreamException if the layout cannot be parsed
+	 */
+	static LayoutModel readModel(final InputStream input) throws XMLStreamException {
+		LayoutModel.Builder builder = new LayoutModel.Builder();
+		read(input, builder);
+		return builder.build();
+	}
+
+	/**
+	 * Streams a layout file to the visitor.
+	 * 
+	 * @param input source of the layout
+	 * @param visitor receiver of the layout
+	 * @throws XMLStreamException if the layout cannot be parsed
+	 */
+	static void read(final InputStream input, final LayoutVisitor visitor) throws XMLStreamException {
+		XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(input);
+		try {
+			int depth = 0;
+			int skipDepth = -1;
+			boolean inFloating = false;
+			// for each open element of the tree, whether the visitor has to be told when it ends
+			Deque<Boolean> containers = new ArrayDeque<>();
+
+			while (reader.hasNext()) {
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					depth++;
+					if (skipDepth >= 0 || depth == 1) {
+						continue;
+					}
+					String name = reader.getLocalName();
+					if (depth == 2 && FLOATING_ELEMENT.equals(name)) {
+						inFloating = true;
+					} else if (inFloating) {
+						if (NODE_ELEMENT.equals(name)) {
+							visitor.floatingNode(reader.getAttributeValue(null, "id"), reader.getAttributeValue(null, "name"),
+									parseDouble(reader, "position-x"), parseDouble(reader, "position-y"),
+									parseDouble(reader, "width"), parseDouble(reader, "height"));
+						}
+						skipDepth = depth;
+					} else {
+						containers.push(startElement(reader, name, visitor));
+						if (NODE_ELEMENT.equals(name)) {
+							skipDepth = depth;
+						}
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					if (skipDepth == depth) {
+						skipDepth = -1;
+						if (inFloating) {
+							depth--;
+							continue;
+						}
+					}
+					if (skipDepth < 0 && depth > 1) {
+						if (inFloating && depth == 2) {
+							inFloating = false;
+						} else if (!inFloating && containers.pop()) {
+							visitor.end();
+						}
+					}
+					depth--;
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Reads the sequence number of the last journal file included in a layout
+	 * file.
+	 * 
+	 * @param filePath Path to file, where layout is saved.
+	 * @return the sequence number, or -1 if the layout is not journaled
+	 * @throws IOException if the file cannot be read
+	 * @throws XMLStreamException if the file is not a layout
+	 */
+	static long readJournalSequence(final String filePath) throws IOException, XMLStreamException {
+		try (InputStream input = new BufferedInputStream(new FileInputStream(filePath))) {
+			XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(input);
+			try {
+				while (reader.hasNext()) {
+					if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+						String value = reader.getAttributeValue(null, JOURNAL_ATTRIBUTE);
+						return (value != null) ? Long.parseLong(value) : -1;
+					}
+				}
+				return -1;
+			} finally {
+				reader.close();
+			}
+		}
+	}
+
+	private static boolean startElement(final XMLStreamReader reader, final String name, final LayoutVisitor visitor) {
+		switch (name) {
+		case SPLITTER_ELEMENT:
+			Orientation orientation = "VERTICAL".equals(reader.getAttributeValue(null, "orientation"))
+					? Orientation.VERTICAL : Orientation.HORIZONTAL;
+			visitor.startSplitter(orientation, parseDividerPositions(reader.getAttributeValue(null, "dividerPositions")));
+			return true;
+		case TABBER_ELEMENT:
+			visitor.startTabber();
+			return true;
+		case SUBSTATION_ELEMENT:
+			visitor.startSubStation(reader.getAttributeValue(null, "id"), reader.getAttributeValue(null, "name"));
+			return true;
+		case NODE_ELEMENT:
+			visitor.dockNode(reader.getAttributeValue(null, "id"), reader.getAttributeValue(null, "name"), null);
+			return false;
+		default:
+			return false;
+		}
+	}
+
+	private static double parseDouble(final XMLStreamReader reader, final String attribute) {
+		return Double.parseDouble(reader.getAttributeValue(null, attribute));
+	}
+
+	/**
+	 * Formats divider positions as a comma separated list. A single position is
+	 * written as layout files have always held it.
+	 */
+	static String formatDividerPositions(final double[] dividerPositions) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < dividerPositions.length; i++) {
+			if (i > 0) {
+				builder.append(',');
+			}
+			builder.append(Double.toString(dividerPositions[i]));
+		}
+		return builder.toString();
+	}
+
+	static double[] parseDividerPositions(final String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return new double[0];
+		}
+		String[] values = value.split(",");
+		double[] dividerPositions = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			dividerPositions[i] = Double.parseDouble(values[i].trim());
+		}
+		return dividerPositions;
+	}
+}
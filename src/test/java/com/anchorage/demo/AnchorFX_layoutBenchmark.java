@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015-2016 Alessio Vinerbi. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.anchorage.demo;
+
+import com.anchorage.docks.node.DockNode;
+import com.anchorage.docks.stations.DockStation;
+import com.anchorage.docks.stations.DockSubStation;
+import com.anchorage.system.AnchorageLayout;
+import com.anchorage.system.AnchorageSystem;
+import com.anchorage.system.BinaryLayoutCodec;
+import com.anchorage.system.LayoutRestoreTiming;
+import com.anchorage.system.StaxLayoutCodec;
+import java.io.File;
+import java.io.IOException;
+import java.util.function.BooleanSupplier;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.stage.Stage;
+
+/**
+ * Compares the DOM, the streaming and the binary layout codecs on a large layout. The
+ * timings are printed on the console, followed by the phases of one restore with each
+ * codec side by side.
+ */
+public class AnchorFX_layoutBenchmark extends Application {
+
+    private static final int DOCKS = 1000;
+    private static final int SUBSTATIONS = 20;
+    private static final int ROUNDS = 10;
+
+    private DockStation station;
+
+    @Override
+    public void start(Stage primaryStage) throws IOException {
+
+        station = AnchorageSystem.createStation();
+
+        Scene scene = new Scene(station, 1024, 768);
+
+        DockNode previous = null;
+        for (int i = 0; i < DOCKS; i++) {
+            DockNode node = AnchorageSystem.createDock("Node" + i, new Label("Node" + i));
+            if (previous == null) {
+                node.dock(station, DockNode.DockPosition.CENTER);
+            } else {
+                node.dock(previous, (i % 3 == 0) ? DockNode.DockPosition.CENTER
+                        : (i % 3 == 1) ? DockNode.DockPosition.RIGHT : DockNode.DockPosition.BOTTOM);
+            }
+            previous = node;
+        }
+
+        for (int i = 0; i < SUBSTATIONS; i++) {
+            DockSubStation subStation = AnchorageSystem.createSubStation(station, "SubStation" + i);
+            for (int j = 0; j < 5; j++) {
+                DockNode node = AnchorageSystem.createDock("SubNode" + i + "-" + j, new Label("SubNode" + j));
+                node.dock(subStation, (j % 2 == 0) ? DockNode.DockPosition.CENTER : DockNode.DockPosition.RIGHT);
+            }
+            subStation.dock(station, DockNode.DockPosition.BOTTOM);
+        }
+
+        primaryStage.setTitle("AnchorFX layout benchmark");
+        primaryStage.setScene(scene);
+        primaryStage.show();
+
+        AnchorageSystem.installDefaultStyle();
+
+        File domFile = File.createTempFile("anchorfx-dom", ".xml");
+        File staxFile = File.createTempFile("anchorfx-stax", ".xml");
+        domFile.deleteOnExit();
+        staxFile.deleteOnExit();
+        File binaryFile = File.createTempFile("anchorfx-binary", ".afxl");
+        binaryFile.deleteOnExit();
+
+        Platform.runLater(() -> {
+            measure("DOM save", () -> AnchorageLayout.saveLayout(station, domFile.getPath()));
+            measure("StAX save", () -> StaxLayoutCodec.saveLayout(station, staxFile.getPath()));
+            measure("Binary save", () -> BinaryLayoutCodec.saveLayout(station, binaryFile.getPath()));
+            System.out.println("DOM file: " + domFile.length() + " bytes, StAX file: " + staxFile.length()
+                    + " bytes, binary file: " + binaryFile.length() + " bytes");
+
+            measure("DOM restore", () -> AnchorageLayout.restoreLayout(station, domFile.getPath()));
+            measure("StAX restore", () -> StaxLayoutCodec.restoreLayout(station, staxFile.getPath()));
+            measure("Binary restore", () -> BinaryLayoutCodec.restoreLayout(station, binaryFile.getPath()));
+            measure("StAX restore of DOM file", () -> StaxLayoutCodec.restoreLayout(station, domFile.getPath()));
+            measure("DOM restore of StAX file", () -> AnchorageLayout.restoreLayout(station, staxFile.getPath()));
+
+            // each restore starts once the previous one settled
+            LayoutRestoreTiming domTiming = new LayoutRestoreTiming();
+            LayoutRestoreTiming staxTiming = new LayoutRestoreTiming();
+            LayoutRestoreTiming binaryTiming = new LayoutRestoreTiming();
+            domTiming.setOnSettled(() -> StaxLayoutCodec.restoreLayout(station, staxFile.getPath(), staxTiming));
+            staxTiming.setOnSettled(() -> BinaryLayoutCodec.restoreLayout(station, binaryFile.getPath(), binaryTiming));
+            binaryTiming.setOnSettled(() -> printPhases(domTiming, staxTiming, binaryTiming));
+            AnchorageLayout.restoreLayout(station, domFile.getPath(), domTiming);
+        });
+    }
+
+    private void printPhases(LayoutRestoreTiming dom, LayoutRestoreTiming stax, LayoutRestoreTiming binary) {
+        System.out.printf("%-28s %10s %10s %10s%n", "Restore phases", "DOM", "StAX", "Binary");
+        printPhase("detach (ms)", dom.getDetachNanos() / 1e6, stax.getDetachNanos() / 1e6,
+                binary.getDetachNanos() / 1e6);
+        printPhase("build (ms)", dom.getBuildNanos() / 1e6, stax.getBuildNanos() / 1e6,
+                binary.getBuildNanos() / 1e6);
+        printPhase("attach (ms)", dom.getAttachNanos() / 1e6, stax.getAttachNanos() / 1e6,
+                binary.getAttachNanos() / 1e6);
+        printPhase("floating (ms)", dom.getFloatingNanos() / 1e6, stax.getFloatingNanos() / 1e6,
+                binary.getFloatingNanos() / 1e6);
+        printPhase("total (ms)", dom.getTotalNanos() / 1e6, stax.getTotalNanos() / 1e6,
+                binary.getTotalNanos() / 1e6);
+        printPhase("pulses", dom.getPulses(), stax.getPulses(), binary.getPulses());
+        printPhase("scene changes", dom.getSceneChanges(), stax.getSceneChanges(), binary.getSceneChanges());
+        printPhase("layout passes", dom.getLayoutPasses(), stax.getLayoutPasses(), binary.getLayoutPasses());
+    }
+
+    private void printPhase(String name, double dom, double stax, double binary) {
+        System.out.printf("%-28s %10.2f %10.2f %10.2f%n", name, dom, stax, binary);
+    }
+
+    private void printPhase(String name, int dom, int stax, int binary) {
+        System.out.printf("%-28s %10d %10d %10d%n", name, dom, stax, binary);
+    }
+
+    private void measure(String name, BooleanSupplier action) {
+        // warm up
+        boolean result = action.getAsBoolean();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            result &= action.getAsBoolean();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-28s %8.2f ms/op %s%n", name, elapsed / 1e6 / ROUNDS, result ? "" : "(failed)");
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        launch(args);
+    }
+
+}
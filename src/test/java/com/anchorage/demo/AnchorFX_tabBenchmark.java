@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015-2016 Alessio Vinerbi. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.anchorage.demo;
+
+import com.anchorage.docks.containers.subcontainers.DockTabberContainer;
+import com.anchorage.docks.node.DockNode;
+import com.anchorage.docks.stations.DockStation;
+import com.anchorage.system.AnchorageSystem;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.stage.Stage;
+
+/**
+ * Times the lookups of docks in large tab groups, as made for every candidate
+ * node on every drag event. The timings are printed on the console.
+ */
+public class AnchorFX_tabBenchmark extends Application {
+
+    private static final int[] TAB_COUNTS = {10, 50, 150, 500};
+    private static final int ROUNDS = 2000;
+
+    @Override
+    public void start(Stage primaryStage) {
+
+        DockStation station = AnchorageSystem.createStation();
+        Scene scene = new Scene(station, 1024, 768);
+        primaryStage.setTitle("AnchorFX tab benchmark");
+        primaryStage.setScene(scene);
+        primaryStage.show();
+
+        AnchorageSystem.installDefaultStyle();
+
+        Platform.runLater(() -> {
+            for (int tabCount : TAB_COUNTS) {
+                List<DockNode> nodes = new ArrayList<>();
+                for (int i = 0; i < tabCount; i++) {
+                    DockNode node = AnchorageSystem.createDock("Tab" + i, new Label("Tab" + i));
+                    node.dock(station, DockNode.DockPosition.CENTER);
+                    nodes.add(node);
+                }
+                DockTabberContainer tabber = (DockTabberContainer) nodes.get(0).getParentContainer();
+
+                measure("isDockVisible", tabCount, () -> {
+                    int visible = 0;
+                    for (DockNode node : nodes) {
+                        if (tabber.isDockVisible(node)) {
+                            visible++;
+                        }
+                    }
+                    return visible;
+                });
+                measure("indexOf", tabCount, () -> {
+                    int sum = 0;
+                    for (DockNode node : nodes) {
+                        sum += tabber.indexOf(node);
+                    }
+                    return sum;
+                });
+
+                for (DockNode node : nodes) {
+                    node.undock();
+                }
+            }
+        });
+    }
+
+    private void measure(String name, int tabCount, IntSupplier lookups) {
+        // warm up
+        int result = lookups.getAsInt();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            result += lookups.getAsInt();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-14s %4d tabs %10.1f ns/lookup (%d)%n", name, tabCount,
+                (double) elapsed / ROUNDS / tabCount, result);
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        launch(args);
+    }
+
+}
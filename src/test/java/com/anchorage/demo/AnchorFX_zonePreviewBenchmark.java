@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015-2016 Alessio Vinerbi. All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package com.anchorage.demo;
+
+import com.anchorage.docks.containers.zones.ZonePreviewTable;
+import com.anchorage.docks.node.DockNode;
+import com.anchorage.docks.stations.DockStation;
+import com.anchorage.system.AnchorageSystem;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.shape.Rectangle;
+import javafx.stage.Stage;
+
+/**
+ * Times the docking previews shown while dragging: computed from the bounds of
+ * the target on every highlight, or read from a preview table built once per
+ * drag. The timings are printed on the console.
+ */
+public class AnchorFX_zonePreviewBenchmark extends Application {
+
+    private static final int[] DOCK_COUNTS = {10, 50, 200};
+    private static final DockNode.DockPosition[] POSITIONS = DockNode.DockPosition.values();
+    private static final int ROUNDS = 2000;
+
+    private DockStation station;
+    private final Rectangle preview = new Rectangle();
+
+    @Override
+    public void start(Stage primaryStage) {
+
+        station = AnchorageSystem.createStation();
+        Scene scene = new Scene(station, 1024, 768);
+        primaryStage.setTitle("AnchorFX zone preview benchmark");
+        primaryStage.setScene(scene);
+        primaryStage.show();
+
+        AnchorageSystem.installDefaultStyle();
+
+        Platform.runLater(() -> {
+            for (int dockCount : DOCK_COUNTS) {
+                List<DockNode> nodes = new ArrayList<>();
+                DockNode previous = null;
+                for (int i = 0; i < dockCount; i++) {
+                    DockNode node = AnchorageSystem.createDock("Node" + i, new Label("Node" + i));
+                    if (previous == null) {
+                        node.dock(station, DockNode.DockPosition.CENTER);
+                    } else {
+                        node.dock(previous, (i % 2 == 0) ? DockNode.DockPosition.RIGHT : DockNode.DockPosition.BOTTOM);
+                    }
+                    nodes.add(node);
+                    previous = node;
+                }
+                station.applyCss();
+                station.layout();
+
+                measure("bounds transform", dockCount, () -> {
+                    int shown = 0;
+                    for (DockNode node : nodes) {
+                        Bounds bounds = computeTargetBounds(node);
+                        for (DockNode.DockPosition position : POSITIONS) {
+                            double[] rectangle = new double[4];
+                            ZonePreviewTable.computePreview(bounds, position, rectangle, 0);
+                            preview.setX(rectangle[0]);
+                            preview.setY(rectangle[1]);
+                            preview.setWidth(rectangle[2]);
+                            preview.setHeight(rectangle[3]);
+                            shown++;
+                        }
+                    }
+                    return shown;
+                });
+
+                ZonePreviewTable table = ZonePreviewTable.build(station.getBoundsInParent(), nodes,
+                        this::computeTargetBounds);
+                measure("table read", dockCount, () -> {
+                    int shown = 0;
+                    for (DockNode node : nodes) {
+                        for (DockNode.DockPosition position : POSITIONS) {
+                            if (table.applyTo(node, position, preview)) {
+                                shown++;
+                            }
+                        }
+                    }
+                    return shown;
+                });
+
+                long start = System.nanoTime();
+                for (int i = 0; i < ROUNDS; i++) {
+                    ZonePreviewTable.build(station.getBoundsInParent(), nodes, this::computeTargetBounds);
+                }
+                long elapsed = System.nanoTime() - start;
+                System.out.printf("%-16s %4d docks %10.1f us/drag%n", "table build", dockCount,
+                        elapsed / 1e3 / ROUNDS);
+
+                for (DockNode node : nodes) {
+                    node.undock();
+                }
+            }
+        });
+    }
+
+    private Bounds computeTargetBounds(DockNode target) {
+        // as the zones of the station compute them for a drag in the main window
+        Bounds nodeSceneBounds = target.localToScene(target.getBoundsInLocal());
+        Bounds stationSceneBounds = station.localToScene(station.getBoundsInLocal());
+        return new BoundingBox(nodeSceneBounds.getMinX() - stationSceneBounds.getMinX(),
+                nodeSceneBounds.getMinY() - stationSceneBounds.getMinY(),
+                nodeSceneBounds.getWidth(), nodeSceneBounds.getHeight());
+    }
+
+    private void measure(String name, int dockCount, IntSupplier highlights) {
+        // warm up
+        int result = highlights.getAsInt();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            result += highlights.getAsInt();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-16s %4d docks %10.1f ns/highlight (%d)%n", name, dockCount,
+                (double) elapsed / ROUNDS / dockCount / POSITIONS.length, result);
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        launch(args);
+    }
+
+}